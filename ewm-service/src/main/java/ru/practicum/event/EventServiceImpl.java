@@ -11,7 +11,7 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.StatsClient;
 import ru.practicum.category.Category;
 import ru.practicum.dto.HitDto;
-import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.ResourceStatsDto;
 import ru.practicum.event.dto.*;
 import ru.practicum.event.model.Event;
 import ru.practicum.event.model.Location;
@@ -233,16 +233,16 @@ public class EventServiceImpl implements EventService {
     }
 
     private Map<Long, Long> getViewsForEvents(List<Long> eventIds) {
-        String uris = eventIds.stream()
-                .map(id -> "/events/" + id)
-                .collect(Collectors.joining(","));
-        ResponseEntity<Object> response = client.findStats(START_HISTORY, LocalDateTime.now(), uris, true);
+        if (eventIds.isEmpty()) {
+            return Map.of();
+        }
+        ResponseEntity<Object> response = client.findResourceStats(START_HISTORY, LocalDateTime.now(), "events", eventIds, true);
         if (response.getBody() instanceof List) {
-            List<StatsDto> stats = objectMapper.convertValue(response.getBody(), new TypeReference<List<StatsDto>>() {});
+            List<ResourceStatsDto> stats = objectMapper.convertValue(response.getBody(), new TypeReference<List<ResourceStatsDto>>() {});
             return stats.stream()
                     .collect(Collectors.toMap(
-                            stat -> extractEventIdFromUri(stat.getUri()),
-                            StatsDto::getHits,
+                            ResourceStatsDto::getId,
+                            ResourceStatsDto::getHits,
                             (existing, replacement) -> existing
                     ));
         } else {
@@ -250,24 +250,8 @@ public class EventServiceImpl implements EventService {
         }
     }
 
-    private Long extractEventIdFromUri(String uri) {
-        String[] parts = uri.split("/");
-        try {
-            return Long.parseLong(parts[parts.length - 1]);
-        } catch (NumberFormatException e) {
-            throw new RuntimeException("Failed to parse event ID from URI: " + uri, e);
-        }
-    }
-
     private Long getViewsEventById(Long eventId) {
-        String uri = "/events/" + eventId;
-        ResponseEntity<Object> response = client.findStats(START_HISTORY, LocalDateTime.now(), uri, true);
-        List<StatsDto> result = objectMapper.convertValue(response.getBody(), new TypeReference<>() {});
-        if (result.isEmpty()) {
-            return 0L;
-        } else {
-            return result.get(0).getHits();
-        }
+        return getViewsForEvents(List.of(eventId)).getOrDefault(eventId, 0L);
     }
 
     private Event baseUpdateEvent(Event event, EventUpdateDto eventUpdateDto) {
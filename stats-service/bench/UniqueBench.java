@@ -0,0 +1,123 @@
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Exact unique visitors per uri over a range of days, computed the two ways the server can: a distinct over the
+ * raw ip of every hit, which is the in-memory half of COUNT(DISTINCT ip), and a union of the stored per-day
+ * Roaring bitmaps, deserialized from bytes as BitmapRepository reads them. Plain timed loops, not JMH, and no
+ * database: the distinct side leaves out reading the rows, so it is a lower bound of what the SQL path costs.
+ *
+ * <pre>
+ * java -Xmx2g -cp ~/.m2/repository/org/roaringbitmap/RoaringBitmap/0.9.49/RoaringBitmap-0.9.49.jar \
+ *     bench/UniqueBench.java [uris] [days] [hitsPerUriDay] [visitors]
+ * </pre>
+ */
+public class UniqueBench {
+
+    private static final int WARMUP = 5;
+    private static final int RUNS = 15;
+
+    public static void main(String[] args) throws IOException {
+        int uris = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int hitsPerUriDay = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int visitors = args.length > 3 ? Integer.parseInt(args[3]) : 200_000;
+
+        // a few heavy visitors and a long tail
+        Random random = new Random(42);
+        int[][][] rows = new int[uris][days][hitsPerUriDay];
+        byte[][][] bitmaps = new byte[uris][days][];
+        long bitmapBytes = 0;
+        for (int u = 0; u < uris; u++) {
+            for (int d = 0; d < days; d++) {
+                RoaringBitmap bitmap = new RoaringBitmap();
+                for (int h = 0; h < hitsPerUriDay; h++) {
+                    int visitor = (int) (visitors * Math.pow(random.nextDouble(), 3));
+                    rows[u][d][h] = visitor;
+                    bitmap.add(visitor);
+                }
+                bitmaps[u][d] = toBytes(bitmap);
+                bitmapBytes += bitmaps[u][d].length;
+            }
+        }
+
+        long[] distinct = new long[uris];
+        long[] union = new long[uris];
+        long distinctNanos = measure(() -> {
+            for (int u = 0; u < uris; u++) {
+                Set<String> seen = new HashSet<>();
+                for (int d = 0; d < days; d++) {
+                    // every row a fresh String, as the driver hands it over, so no hash code is cached
+                    for (int visitor : rows[u][d]) {
+                        seen.add(ip(visitor));
+                    }
+                }
+                distinct[u] = seen.size();
+            }
+        });
+        long unionNanos = measure(() -> {
+            for (int u = 0; u < uris; u++) {
+                RoaringBitmap all = new RoaringBitmap();
+                for (int d = 0; d < days; d++) {
+                    all.or(fromBytes(bitmaps[u][d]));
+                }
+                union[u] = all.getLongCardinality();
+            }
+        });
+        if (!Arrays.equals(distinct, union)) {
+            throw new IllegalStateException("Distinct and bitmap counts differ");
+        }
+
+        long hits = (long) uris * days * hitsPerUriDay;
+        System.out.printf("%d uris x %d days x %d hits = %d hits, %d visitors, %d bitmap bytes%n",
+                uris, days, hitsPerUriDay, hits, visitors, bitmapBytes);
+        System.out.printf("distinct ip   %8.1f ms%n", distinctNanos / 1e6);
+        System.out.printf("bitmap union  %8.1f ms%n", unionNanos / 1e6);
+    }
+
+    private static long measure(Runnable query) {
+        for (int i = 0; i < WARMUP; i++) {
+            query.run();
+        }
+        long[] nanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            query.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[RUNS / 2];
+    }
+
+    private static String ip(int visitor) {
+        return "10." + (visitor >>> 16 & 0xff) + "." + (visitor >>> 8 & 0xff) + "." + (visitor & 0xff);
+    }
+
+    private static byte[] toBytes(RoaringBitmap bitmap) throws IOException {
+        bitmap.runOptimize();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(bitmap.serializedSizeInBytes());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            bitmap.serialize(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static RoaringBitmap fromBytes(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            bitmap.deserialize(in);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bitmap;
+    }
+}
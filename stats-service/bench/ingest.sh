@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Compares hit ingestion throughput of POST /hit (one hit per request) with POST /hits (JSON array batches)
+# against a running stats server. Both runs send the same number of hits over one keep-alive connection,
+# so the difference is per-request overhead and per-hit vs batched inserts, not connection setup.
+#
+# usage: bench/ingest.sh [hits] [batch-size] [base-url]
+#   e.g. docker compose up -d stats-server stats-db && bench/ingest.sh 20000 500
+set -euo pipefail
+
+HITS=${1:-10000}
+BATCH=${2:-500}
+URL=${3:-http://localhost:9090}
+RUN=$(date +%s)
+NOW=$(date '+%Y-%m-%d %H:%M:%S')
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+hit() {
+    printf '{"hitId":"%s-%s-%d","app":"bench","uri":"/events/%d","ip":"10.%d.%d.%d","timestamp":"%s"}' \
+        "$1" "$RUN" "$2" $(($2 % 100)) $(($2 / 65536 % 256)) $(($2 / 256 % 256)) $(($2 % 256)) "$NOW"
+}
+
+millis() {
+    echo $(($(date +%s%N) / 1000000))
+}
+
+report() {
+    local elapsed=$(($3 > 0 ? $3 : 1))
+    printf '%-7s %8d hits %6d requests %8d ms %10d hits/s\n' "$1" "$HITS" "$2" "$elapsed" $((HITS * 1000 / elapsed))
+}
+
+# one curl process, one request per config block, "next" keeps the connection open between them; the
+# trailing "next" is cut off when the config is read
+for ((i = 0; i < HITS; i++)); do
+    printf 'url = "%s/hit"\nheader = "Content-Type: application/json"\ndata = %s\noutput = /dev/null\nnext\n' \
+        "$URL" "$(hit single "$i" | sed 's/"/\\"/g; s/^/"/; s/$/"/')"
+done > "$WORK/single.cfg"
+
+requests=0
+for ((i = 0; i < HITS; i += BATCH)); do
+    {
+        printf '['
+        for ((j = i; j < i + BATCH && j < HITS; j++)); do
+            [ "$j" -gt "$i" ] && printf ','
+            hit batch "$j"
+        done
+        printf ']'
+    } > "$WORK/batch-$requests.json"
+    printf 'url = "%s/hits"\nheader = "Content-Type: application/json"\ndata-binary = "@%s"\noutput = /dev/null\nnext\n' \
+        "$URL" "$WORK/batch-$requests.json"
+    requests=$((requests + 1))
+done > "$WORK/batch.cfg"
+
+start=$(millis)
+curl -sS --fail -K <(sed '$d' "$WORK/single.cfg")
+report "/hit" "$HITS" $(($(millis) - start))
+
+start=$(millis)
+curl -sS --fail -K <(sed '$d' "$WORK/batch.cfg")
+report "/hits" "$requests" $(($(millis) - start))
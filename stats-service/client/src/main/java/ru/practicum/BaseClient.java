@@ -20,15 +20,20 @@ public class BaseClient {
     }
 
     protected <T> ResponseEntity<Object> post(String path, T body) {
-        return makeAndSendRequest(HttpMethod.POST, path, null, body);
+        return makeAndSendRequest(HttpMethod.POST, path, null, body, MediaType.APPLICATION_JSON);
+    }
+
+    protected ResponseEntity<Object> post(String path, byte[] body, MediaType contentType) {
+        return makeAndSendRequest(HttpMethod.POST, path, null, body, contentType);
     }
 
     protected ResponseEntity<Object> get(String path, @Nullable Map<String, Object> parameters) {
-        return makeAndSendRequest(HttpMethod.GET, path, parameters, null);
+        return makeAndSendRequest(HttpMethod.GET, path, parameters, null, MediaType.APPLICATION_JSON);
     }
 
-    private <T> ResponseEntity<Object> makeAndSendRequest(HttpMethod method, String path, @Nullable Map<String, Object> parameters, @Nullable T body) {
-        HttpEntity<T> requestEntity = new HttpEntity<>(body, defaultHeaders());
+    private <T> ResponseEntity<Object> makeAndSendRequest(HttpMethod method, String path, @Nullable Map<String, Object> parameters,
+                                                          @Nullable T body, MediaType contentType) {
+        HttpEntity<T> requestEntity = new HttpEntity<>(body, defaultHeaders(contentType));
         ResponseEntity<Object> statsServiceResponse;
         try {
             if (parameters != null) {
@@ -42,9 +47,9 @@ public class BaseClient {
         return prepareGatewayResponse(statsServiceResponse);
     }
 
-    private HttpHeaders defaultHeaders() {
+    private HttpHeaders defaultHeaders(MediaType contentType) {
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setContentType(contentType);
         headers.setAccept(List.of(MediaType.APPLICATION_JSON));
         return headers;
     }
@@ -0,0 +1,81 @@
+package ru.practicum;
+
+import ru.practicum.dto.HitBatchCodec;
+import ru.practicum.dto.HitDto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends hits to the stats servers' UDP listeners as {@link HitBatchCodec} datagrams. Hits are routed on the same
+ * ring as the HTTP shards, so a uri lands on the same server either way, and each server's hits are packed into
+ * as few datagrams under the size limit as possible. Delivery is not confirmed.
+ */
+public class DatagramHitSender implements Closeable {
+
+    private final DatagramChannel channel;
+    private final ConsistentHashRing<InetSocketAddress> ring;
+    private final int maxPacketSize;
+
+    public DatagramHitSender(List<String> urls, int port, int maxPacketSize) {
+        Map<String, InetSocketAddress> nodes = new LinkedHashMap<>();
+        for (String url : urls) {
+            nodes.put(url, new InetSocketAddress(URI.create(url).getHost(), port));
+        }
+        this.ring = new ConsistentHashRing<>(nodes, StatsShards.VIRTUAL_NODES);
+        this.maxPacketSize = maxPacketSize;
+        try {
+            this.channel = DatagramChannel.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns how many hits were handed to the network; hits that do not fit in a datagram even on their own,
+     * or whose datagram failed to send, are not counted.
+     */
+    public int send(List<HitDto> hitDtos) {
+        Map<InetSocketAddress, List<HitDto>> grouped = new LinkedHashMap<>();
+        for (HitDto hitDto : hitDtos) {
+            grouped.computeIfAbsent(ring.nodeFor(StatsShards.routingKey(hitDto.getUri())), node -> new ArrayList<>())
+                    .add(hitDto);
+        }
+        int sent = 0;
+        for (Map.Entry<InetSocketAddress, List<HitDto>> entry : grouped.entrySet()) {
+            sent += send(entry.getKey(), entry.getValue());
+        }
+        return sent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int send(InetSocketAddress target, List<HitDto> hitDtos) {
+        byte[] packet = HitBatchCodec.encode(hitDtos);
+        if (packet.length > maxPacketSize) {
+            if (hitDtos.size() == 1) {
+                return 0;
+            }
+            int middle = hitDtos.size() / 2;
+            return send(target, hitDtos.subList(0, middle)) + send(target, hitDtos.subList(middle, hitDtos.size()));
+        }
+        try {
+            channel.send(ByteBuffer.wrap(packet), target);
+            return hitDtos.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -1,35 +1,97 @@
 package ru.practicum;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.dto.HitBatchCodec;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsQueryDto;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static ru.practicum.Util.DATE_FORMAT;
 
 @Service
 public class StatsClient extends BaseClient {
 
+    private static final MediaType HIT_BATCH_TYPE = MediaType.parseMediaType(HitBatchCodec.MEDIA_TYPE);
+
+    private final StatsShards shards;
+    private final boolean binaryHits;
+    private final DatagramHitSender datagramSender;
+
+    /**
+     * A hit id is sent only when the caller set one: it is what lets the server drop a hit the caller sends
+     * again after a failed attempt, and a fresh id per call would never match anything.
+     */
     public ResponseEntity<Object> addHit(HitDto hitDto) {
+        if (datagramSender != null) {
+            datagramSender.send(List.of(hitDto));
+            return ResponseEntity.accepted().build();
+        }
+        if (shards != null) {
+            return shards.addHit(hitDto);
+        }
         return post("/hit", hitDto);
     }
 
+    /**
+     * Sends a batch to /hits, in the compact binary encoding unless stats-server.binary-hits is off, or as
+     * datagrams when stats-server.udp-port is set, in which case nothing is known about the outcome.
+     */
+    public ResponseEntity<Object> addHits(List<HitDto> hitDtos) {
+        if (datagramSender != null) {
+            datagramSender.send(hitDtos);
+            return ResponseEntity.accepted().build();
+        }
+        if (shards != null) {
+            return shards.addHits(hitDtos, this::sendHits);
+        }
+        return sendHits(this, hitDtos);
+    }
+
     @Autowired
-    public StatsClient(@Value("${stats-server.url}") String serverUrl, RestTemplateBuilder builder) {
+    public StatsClient(@Value("${stats-server.url}") String serverUrl,
+                       @Value("${stats-server.shards:}") List<String> shardUrls,
+                       @Value("${stats-server.binary-hits:true}") boolean binaryHits,
+                       @Value("${stats-server.udp-port:0}") int udpPort,
+                       @Value("${stats-server.udp-max-packet-bytes:1400}") int udpMaxPacketBytes,
+                       RestTemplateBuilder builder,
+                       ObjectMapper objectMapper) {
         super(
                 builder
                         .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl))
                         .requestFactory(HttpComponentsClientHttpRequestFactory::new)
                         .build()
         );
+        List<String> urls = shardUrls.stream()
+                .filter(url -> !url.isBlank())
+                .collect(Collectors.toList());
+        this.shards = urls.isEmpty() ? null : new StatsShards(urls, builder, objectMapper);
+        this.binaryHits = binaryHits;
+        this.datagramSender = udpPort > 0
+                ? new DatagramHitSender(urls.isEmpty() ? List.of(serverUrl) : urls, udpPort, udpMaxPacketBytes)
+                : null;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (datagramSender != null) {
+            datagramSender.close();
+        }
     }
 
     public ResponseEntity<Object> findStats(LocalDateTime start, LocalDateTime  end, String uris, boolean unique) {
@@ -39,6 +101,92 @@ public class StatsClient extends BaseClient {
                 "uris", uris,
                 "unique", unique
         );
-        return get("/stats?start={start}&end={end}&uris={uris}&unique={unique}", parameters);
+        String path = "/stats?start={start}&end={end}&uris={uris}&unique={unique}";
+        if (shards != null) {
+            return shards.findStats(path, parameters, uris, unique);
+        }
+        return get(path, parameters);
+    }
+
+    public ResponseEntity<Object> findStatsBatch(List<StatsQueryDto> queries) {
+        if (shards != null) {
+            return shards.findStatsBatch(queries);
+        }
+        return post("/stats/query", queries);
+    }
+
+    public ResponseEntity<Object> findTopStats(LocalDateTime start, LocalDateTime end, String prefix, int limit, boolean unique) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("start", start.format(DateTimeFormatter.ofPattern(DATE_FORMAT)));
+        parameters.put("end", end.format(DateTimeFormatter.ofPattern(DATE_FORMAT)));
+        parameters.put("limit", limit);
+        parameters.put("unique", unique);
+        String path = optional("/stats/top?start={start}&end={end}&limit={limit}&unique={unique}",
+                parameters, "prefix", prefix);
+        if (shards != null) {
+            return shards.findTopStats(path, parameters, limit);
+        }
+        return get(path, parameters);
+    }
+
+    public ResponseEntity<Object> findTrending(String prefix, int limit) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("limit", limit);
+        String path = optional("/stats/trending?limit={limit}", parameters, "prefix", prefix);
+        if (shards != null) {
+            return shards.findTrending(path, parameters, limit);
+        }
+        return get(path, parameters);
+    }
+
+    public ResponseEntity<Object> findHistogram(LocalDateTime start, LocalDateTime end, String uris,
+                                                String interval, boolean unique) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("start", start.format(DateTimeFormatter.ofPattern(DATE_FORMAT)));
+        parameters.put("end", end.format(DateTimeFormatter.ofPattern(DATE_FORMAT)));
+        parameters.put("interval", interval);
+        parameters.put("unique", unique);
+        String path = optional("/stats/histogram?start={start}&end={end}&interval={interval}&unique={unique}",
+                parameters, "uris", uris);
+        if (shards != null) {
+            return shards.findHistogram(path, parameters, uris);
+        }
+        return get(path, parameters);
+    }
+
+    public ResponseEntity<Object> findResourceStats(LocalDateTime start, LocalDateTime end, String type,
+                                                    List<Long> ids, boolean unique) {
+        Map<String, Object> parameters = Map.of(
+                "start", start.format(DateTimeFormatter.ofPattern(DATE_FORMAT)),
+                "end", end.format(DateTimeFormatter.ofPattern(DATE_FORMAT)),
+                "type", type,
+                "ids", ids.stream()
+                        .map(String::valueOf)
+                        .collect(Collectors.joining(",")),
+                "unique", unique
+        );
+        String path = "/stats/resources?start={start}&end={end}&type={type}&ids={ids}&unique={unique}";
+        if (shards != null) {
+            return shards.findResourceStats(path, parameters, type, ids);
+        }
+        return get(path, parameters);
+    }
+
+    /**
+     * Adds an optional query parameter to the path template, leaving it out entirely when it is null.
+     */
+    private static String optional(String path, Map<String, Object> parameters, String name, Object value) {
+        if (value == null) {
+            return path;
+        }
+        parameters.put(name, value);
+        return path + "&" + name + "={" + name + "}";
+    }
+
+    private ResponseEntity<Object> sendHits(BaseClient target, List<HitDto> hitDtos) {
+        if (binaryHits) {
+            return target.post("/hits", HitBatchCodec.encode(hitDtos), HIT_BATCH_TYPE);
+        }
+        return target.post("/hits", hitDtos);
     }
 }
@@ -0,0 +1,366 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.dto.HistogramDto;
+import ru.practicum.dto.HistogramSeriesDto;
+import ru.practicum.dto.HitBatchResultDto;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.HitFailureDto;
+import ru.practicum.dto.ResourceStatsDto;
+import ru.practicum.dto.SketchDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.StatsQueryDto;
+import ru.practicum.dto.StatsQueryResultDto;
+import ru.practicum.dto.TrendingDto;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+public class StatsShards {
+
+    static final int VIRTUAL_NODES = 128;
+    private static final String SKETCHES_PATH = "/stats/sketches?start={start}&end={end}&uris={uris}";
+
+    private final List<BaseClient> shards = new ArrayList<>();
+    private final ConsistentHashRing<BaseClient> ring;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+
+    public StatsShards(List<String> urls, RestTemplateBuilder builder, ObjectMapper objectMapper) {
+        Map<String, BaseClient> nodes = new LinkedHashMap<>();
+        for (String url : urls) {
+            BaseClient shard = new BaseClient(builder
+                    .uriTemplateHandler(new DefaultUriBuilderFactory(url))
+                    .requestFactory(HttpComponentsClientHttpRequestFactory::new)
+                    .build());
+            shards.add(shard);
+            nodes.put(url, shard);
+        }
+        this.ring = new ConsistentHashRing<>(nodes, VIRTUAL_NODES);
+        this.objectMapper = objectMapper;
+        this.executor = Executors.newFixedThreadPool(urls.size() * 2, runnable -> {
+            Thread thread = new Thread(runnable, "stats-shard-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static String routingKey(String uri) {
+        int end = uri.indexOf('?');
+        if (end < 0) {
+            end = uri.length();
+        }
+        if (end > 1 && uri.charAt(end - 1) == '/') {
+            end--;
+        }
+        return uri.substring(0, end);
+    }
+
+    public ResponseEntity<Object> addHit(HitDto hitDto) {
+        return ring.nodeFor(routingKey(hitDto.getUri())).post("/hit", hitDto);
+    }
+
+    /**
+     * Splits the batch by owning shard and sends each part with the given call. Failure indexes are mapped back
+     * to positions in the original batch.
+     */
+    public ResponseEntity<Object> addHits(List<HitDto> hitDtos, BiFunction<BaseClient, List<HitDto>, ResponseEntity<Object>> send) {
+        Map<BaseClient, List<HitDto>> grouped = new LinkedHashMap<>();
+        Map<BaseClient, List<Integer>> indexes = new HashMap<>();
+        for (int i = 0; i < hitDtos.size(); i++) {
+            BaseClient shard = ring.nodeFor(routingKey(hitDtos.get(i).getUri()));
+            grouped.computeIfAbsent(shard, ignored -> new ArrayList<>()).add(hitDtos.get(i));
+            indexes.computeIfAbsent(shard, ignored -> new ArrayList<>()).add(i);
+        }
+        Map<BaseClient, ResponseEntity<Object>> responses = scatter(grouped, send);
+        ResponseEntity<Object> error = firstError(responses.values());
+        if (error != null) {
+            return error;
+        }
+        int saved = 0;
+        int duplicates = 0;
+        List<HitFailureDto> failures = new ArrayList<>();
+        for (Map.Entry<BaseClient, ResponseEntity<Object>> entry : responses.entrySet()) {
+            HitBatchResultDto part = objectMapper.convertValue(entry.getValue().getBody(), HitBatchResultDto.class);
+            saved += part.getSaved() == null ? 0 : part.getSaved();
+            duplicates += part.getDuplicates() == null ? 0 : part.getDuplicates();
+            if (part.getFailures() != null) {
+                for (HitFailureDto failure : part.getFailures()) {
+                    failures.add(new HitFailureDto(indexes.get(entry.getKey()).get(failure.getIndex()), failure.getError()));
+                }
+            }
+        }
+        failures.sort(Comparator.comparing(HitFailureDto::getIndex));
+        return ResponseEntity.status(HttpStatus.CREATED).body(HitBatchResultDto.builder()
+                .received(hitDtos.size())
+                .saved(saved)
+                .duplicates(duplicates)
+                .failures(failures)
+                .build());
+    }
+
+    public ResponseEntity<Object> findStats(String path, Map<String, Object> parameters, String uris, boolean unique) {
+        Map<BaseClient, String> targets = routeUris(uris);
+        Map<BaseClient, ResponseEntity<Object>> responses = scatter(targets,
+                (shard, shardUris) -> shard.get(path, with(parameters, "uris", shardUris)));
+        ResponseEntity<Object> error = firstError(responses.values());
+        if (error != null) {
+            return error;
+        }
+        Set<String> duplicated = new HashSet<>();
+        Map<String, StatsDto> merged = mergeStats(responses.values(), duplicated);
+        if (unique && !duplicated.isEmpty()) {
+            String duplicatedUris = merged.entrySet().stream()
+                    .filter(entry -> duplicated.contains(entry.getKey()))
+                    .map(entry -> entry.getValue().getUri())
+                    .distinct()
+                    .collect(Collectors.joining(","));
+            Map<BaseClient, ResponseEntity<Object>> sketches = scatter(toMap(targets.keySet(), duplicatedUris),
+                    (shard, shardUris) -> shard.get(SKETCHES_PATH, with(parameters, "uris", shardUris)));
+            error = firstError(sketches.values());
+            if (error != null) {
+                return error;
+            }
+            Map<String, HyperLogLog> unions = new HashMap<>();
+            for (ResponseEntity<Object> response : sketches.values()) {
+                for (SketchDto sketch : convert(response, new TypeReference<List<SketchDto>>() {})) {
+                    String key = key(sketch.getApp(), sketch.getUri());
+                    if (duplicated.contains(key)) {
+                        unions.computeIfAbsent(key, k -> new HyperLogLog())
+                                .merge(HyperLogLog.fromBytes(sketch.getSketch()));
+                    }
+                }
+            }
+            unions.forEach((key, union) -> merged.get(key).setHits(union.estimate()));
+        }
+        return ResponseEntity.ok(sortStats(merged.values(), Integer.MAX_VALUE));
+    }
+
+    public ResponseEntity<Object> findTopStats(String path, Map<String, Object> parameters, int limit) {
+        Map<BaseClient, ResponseEntity<Object>> responses = scatter(toMap(shards, null),
+                (shard, ignored) -> shard.get(path, parameters));
+        ResponseEntity<Object> error = firstError(responses.values());
+        if (error != null) {
+            return error;
+        }
+        return ResponseEntity.ok(sortStats(mergeStats(responses.values(), new HashSet<>()).values(), limit));
+    }
+
+    public ResponseEntity<Object> findResourceStats(String path, Map<String, Object> parameters, String type, List<Long> ids) {
+        Map<BaseClient, List<Long>> targets = new LinkedHashMap<>();
+        for (Long id : ids) {
+            targets.computeIfAbsent(ring.nodeFor("/" + type + "/" + id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<BaseClient, ResponseEntity<Object>> responses = scatter(targets,
+                (shard, shardIds) -> shard.get(path, with(parameters, "ids", shardIds.stream()
+                        .map(String::valueOf)
+                        .collect(Collectors.joining(",")))));
+        ResponseEntity<Object> error = firstError(responses.values());
+        if (error != null) {
+            return error;
+        }
+        Map<Long, ResourceStatsDto> merged = new LinkedHashMap<>();
+        for (ResponseEntity<Object> response : responses.values()) {
+            for (ResourceStatsDto stats : convert(response, new TypeReference<List<ResourceStatsDto>>() {})) {
+                merged.merge(stats.getId(), stats, (existing, added) -> {
+                    existing.setHits(existing.getHits() + added.getHits());
+                    return existing;
+                });
+            }
+        }
+        List<ResourceStatsDto> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(ResourceStatsDto::getHits).reversed());
+        return ResponseEntity.ok(result);
+    }
+
+    public ResponseEntity<Object> findTrending(String path, Map<String, Object> parameters, int limit) {
+        Map<BaseClient, ResponseEntity<Object>> responses = scatter(toMap(shards, null),
+                (shard, ignored) -> shard.get(path, parameters));
+        ResponseEntity<Object> error = firstError(responses.values());
+        if (error != null) {
+            return error;
+        }
+        Map<String, TrendingDto> merged = new LinkedHashMap<>();
+        for (ResponseEntity<Object> response : responses.values()) {
+            for (TrendingDto trending : convert(response, new TypeReference<List<TrendingDto>>() {})) {
+                merged.merge(trending.getUri(), trending, (existing, added) -> {
+                    existing.setScore(existing.getScore() + added.getScore());
+                    return existing;
+                });
+            }
+        }
+        return ResponseEntity.ok(merged.values().stream()
+                .sorted(Comparator.comparing(TrendingDto::getScore).reversed())
+                .limit(limit)
+                .collect(Collectors.toList()));
+    }
+
+    public ResponseEntity<Object> findHistogram(String path, Map<String, Object> parameters, String uris) {
+        Map<BaseClient, ResponseEntity<Object>> responses = scatter(routeUris(uris),
+                (shard, shardUris) -> shard.get(path, with(parameters, "uris", shardUris)));
+        ResponseEntity<Object> error = firstError(responses.values());
+        if (error != null) {
+            return error;
+        }
+        HistogramDto result = null;
+        Map<String, HistogramSeriesDto> series = new LinkedHashMap<>();
+        for (ResponseEntity<Object> response : responses.values()) {
+            HistogramDto histogram = convert(response, new TypeReference<HistogramDto>() {});
+            if (result == null) {
+                result = histogram;
+            }
+            for (HistogramSeriesDto added : histogram.getSeries()) {
+                series.merge(key(added.getApp(), added.getUri()), added, (existing, next) -> {
+                    existing.setHits(sum(existing.getHits(), next.getHits()));
+                    existing.setUnique(sum(existing.getUnique(), next.getUnique()));
+                    return existing;
+                });
+            }
+        }
+        result.setSeries(new ArrayList<>(series.values()));
+        return ResponseEntity.ok(result);
+    }
+
+    public ResponseEntity<Object> findStatsBatch(List<StatsQueryDto> queries) {
+        Map<BaseClient, ResponseEntity<Object>> responses = scatter(toMap(shards, null),
+                (shard, ignored) -> shard.post("/stats/query", queries));
+        ResponseEntity<Object> error = firstError(responses.values());
+        if (error != null) {
+            return error;
+        }
+        List<Map<String, StatsDto>> merged = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            merged.add(new LinkedHashMap<>());
+        }
+        for (ResponseEntity<Object> response : responses.values()) {
+            for (StatsQueryResultDto result : convert(response, new TypeReference<List<StatsQueryResultDto>>() {})) {
+                for (StatsDto stats : result.getStats()) {
+                    addStats(merged.get(result.getIndex()), stats, new HashSet<>());
+                }
+            }
+        }
+        List<StatsQueryResultDto> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(new StatsQueryResultDto(i, sortStats(merged.get(i).values(), Integer.MAX_VALUE)));
+        }
+        return ResponseEntity.ok(results);
+    }
+
+    private Map<BaseClient, String> routeUris(String uris) {
+        if (uris == null || uris.isBlank() || uris.contains("*")) {
+            return toMap(shards, uris);
+        }
+        Map<BaseClient, List<String>> grouped = new LinkedHashMap<>();
+        for (String uri : uris.split(",")) {
+            grouped.computeIfAbsent(ring.nodeFor(routingKey(uri.trim())), shard -> new ArrayList<>()).add(uri.trim());
+        }
+        Map<BaseClient, String> targets = new LinkedHashMap<>();
+        grouped.forEach((shard, shardUris) -> targets.put(shard, String.join(",", shardUris)));
+        return targets;
+    }
+
+    private <K> Map<BaseClient, ResponseEntity<Object>> scatter(Map<BaseClient, K> targets,
+                                                                BiFunction<BaseClient, K, ResponseEntity<Object>> call) {
+        Map<BaseClient, CompletableFuture<ResponseEntity<Object>>> futures = new LinkedHashMap<>();
+        targets.forEach((shard, argument) ->
+                futures.put(shard, CompletableFuture.supplyAsync(() -> call.apply(shard, argument), executor)));
+        Map<BaseClient, ResponseEntity<Object>> responses = new LinkedHashMap<>();
+        try {
+            futures.forEach((shard, future) -> responses.put(shard, future.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return responses;
+    }
+
+    private Map<String, StatsDto> mergeStats(Collection<ResponseEntity<Object>> responses, Set<String> duplicated) {
+        Map<String, StatsDto> merged = new LinkedHashMap<>();
+        for (ResponseEntity<Object> response : responses) {
+            for (StatsDto stats : convert(response, new TypeReference<List<StatsDto>>() {})) {
+                addStats(merged, stats, duplicated);
+            }
+        }
+        return merged;
+    }
+
+    private static void addStats(Map<String, StatsDto> merged, StatsDto stats, Set<String> duplicated) {
+        String key = key(stats.getApp(), stats.getUri());
+        StatsDto existing = merged.get(key);
+        if (existing == null) {
+            merged.put(key, stats);
+        } else {
+            existing.setHits(existing.getHits() + stats.getHits());
+            duplicated.add(key);
+        }
+    }
+
+    private static List<StatsDto> sortStats(Collection<StatsDto> stats, int limit) {
+        return stats.stream()
+                .sorted(Comparator.comparing(StatsDto::getHits).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private <T> T convert(ResponseEntity<Object> response, TypeReference<T> type) {
+        return objectMapper.convertValue(response.getBody(), type);
+    }
+
+    private static ResponseEntity<Object> firstError(Collection<ResponseEntity<Object>> responses) {
+        for (ResponseEntity<Object> response : responses) {
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                return response;
+            }
+        }
+        return null;
+    }
+
+    private static <K> Map<BaseClient, K> toMap(Collection<BaseClient> shards, K argument) {
+        Map<BaseClient, K> targets = new LinkedHashMap<>();
+        shards.forEach(shard -> targets.put(shard, argument));
+        return targets;
+    }
+
+    private static Map<String, Object> with(Map<String, Object> parameters, String name, Object value) {
+        Map<String, Object> result = new HashMap<>(parameters);
+        result.put(name, value == null ? "" : value);
+        return result;
+    }
+
+    private static String key(String app, String uri) {
+        return app + " " + uri;
+    }
+
+    private static long[] sum(long[] left, long[] right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        long[] result = left.clone();
+        for (int i = 0; i < result.length && i < right.length; i++) {
+            result[i] += right[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,29 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static ru.practicum.Util.DATE_FORMAT;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class HistogramDto {
+
+    String interval;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = DATE_FORMAT)
+    LocalDateTime start;
+
+    Integer buckets;
+
+    Boolean approximate;
+
+    List<HistogramSeriesDto> series;
+}
@@ -0,0 +1,22 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HistogramSeriesDto {
+
+    String app;
+
+    String uri;
+
+    long[] hits;
+
+    long[] unique;
+}
@@ -0,0 +1,224 @@
+package ru.practicum.dto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a {@link HitDto} batch, sent as {@value #MEDIA_TYPE}:
+ *
+ * <pre>
+ * int magic | varint stringCount | strings | varint hitCount | hits
+ * string: varint utf8Length | utf8 bytes
+ * hit:    varint hitIdLength + 1 (0 = none) | hitId bytes | varint app | varint uri | varint ip
+ *         | zigzag varint timestamp millis minus the previous hit's
+ * </pre>
+ *
+ * Apps, uris and ips repeat heavily within a batch, so they are written once into the string table and
+ * referenced by index. Timestamps are epoch millis of the local date-time read as UTC, delta-encoded, so a
+ * batch of hits close in time costs a byte or two per timestamp instead of a formatted string.
+ */
+public final class HitBatchCodec {
+
+    public static final String MEDIA_TYPE = "application/x-stats-hits";
+
+    private static final int MAGIC = 0x48425431;
+    private static final int MAX_STRING_LENGTH = 1 << 16;
+
+    private HitBatchCodec() {
+    }
+
+    public static byte[] encode(List<HitDto> hits) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + hits.size() * 16);
+        try {
+            encode(hits, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static void encode(List<HitDto> hits, OutputStream out) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] refs = new int[hits.size() * 3];
+        for (int i = 0; i < hits.size(); i++) {
+            HitDto hit = hits.get(i);
+            if (hit.getTimestamp() == null) {
+                throw new IllegalArgumentException("Hit " + i + " has no timestamp");
+            }
+            refs[i * 3] = intern(hit.getApp(), indexes, strings);
+            refs[i * 3 + 1] = intern(hit.getUri(), indexes, strings);
+            refs[i * 3 + 2] = intern(hit.getIp(), indexes, strings);
+        }
+        writeInt(out, MAGIC);
+        writeVarint(out, strings.size());
+        for (String string : strings) {
+            writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+        }
+        writeVarint(out, hits.size());
+        long previous = 0;
+        for (int i = 0; i < hits.size(); i++) {
+            HitDto hit = hits.get(i);
+            if (hit.getHitId() == null) {
+                writeVarint(out, 0);
+            } else {
+                byte[] hitId = hit.getHitId().getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, hitId.length + 1);
+                out.write(hitId);
+            }
+            writeVarint(out, refs[i * 3]);
+            writeVarint(out, refs[i * 3 + 1]);
+            writeVarint(out, refs[i * 3 + 2]);
+            long millis = hit.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+            long delta = millis - previous;
+            writeVarint(out, delta << 1 ^ delta >> 63);
+            previous = millis;
+        }
+    }
+
+    /**
+     * Reads one batch of at most maxHits hits. Strings are only ever null in the result if they were null when
+     * encoded; a timestamp is never null. Throws an IOException on anything that is not a well-formed batch,
+     * and before reading the hits of a batch over the limit.
+     */
+    public static List<HitDto> decode(InputStream in, int maxHits) throws IOException {
+        if (readInt(in) != MAGIC) {
+            throw new IOException("Not a hit batch");
+        }
+        // every hit references at most three strings
+        int stringCount = readLength(in, (int) Math.min(3L * maxHits, Integer.MAX_VALUE));
+        List<String> strings = new ArrayList<>(Math.min(stringCount, 1024));
+        for (int i = 0; i < stringCount; i++) {
+            strings.add(new String(readBytes(in, readLength(in, MAX_STRING_LENGTH)), StandardCharsets.UTF_8));
+        }
+        int hitCount = readLength(in, maxHits);
+        List<HitDto> hits = new ArrayList<>(Math.min(hitCount, 1024));
+        long previous = 0;
+        for (int i = 0; i < hitCount; i++) {
+            int hitIdLength = readLength(in, MAX_STRING_LENGTH + 1);
+            String hitId = hitIdLength == 0
+                    ? null
+                    : new String(readBytes(in, hitIdLength - 1), StandardCharsets.UTF_8);
+            String app = lookup(strings, readVarint(in));
+            String uri = lookup(strings, readVarint(in));
+            String ip = lookup(strings, readVarint(in));
+            long zigzag = readVarint(in);
+            long millis = previous + (zigzag >>> 1 ^ -(zigzag & 1));
+            previous = millis;
+            LocalDateTime timestamp;
+            try {
+                timestamp = LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                        (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+            } catch (DateTimeException e) {
+                throw new IOException("Timestamp " + millis + " out of range", e);
+            }
+            hits.add(HitDto.builder()
+                    .hitId(hitId)
+                    .app(app)
+                    .uri(uri)
+                    .ip(ip)
+                    .timestamp(timestamp)
+                    .build());
+        }
+        return hits;
+    }
+
+    private static int intern(String value, Map<String, Integer> indexes, List<String> strings) {
+        if (value == null) {
+            return 0;
+        }
+        Integer index = indexes.get(value);
+        if (index == null) {
+            strings.add(value);
+            index = strings.size();
+            indexes.put(value, index);
+        }
+        return index;
+    }
+
+    private static String lookup(List<String> strings, long ref) throws IOException {
+        if (ref == 0) {
+            return null;
+        }
+        if (ref < 0 || ref > strings.size()) {
+            throw new IOException("String reference " + ref + " out of range");
+        }
+        return strings.get((int) ref - 1);
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeBytes(OutputStream out, byte[] bytes) throws IOException {
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readInt(InputStream in) throws IOException {
+        return readByte(in) << 24 | readByte(in) << 16 | readByte(in) << 8 | readByte(in);
+    }
+
+    private static int readLength(InputStream in, int max) throws IOException {
+        long length = readVarint(in);
+        if (length < 0 || length > max) {
+            throw new IOException("Length " + length + " exceeds " + max);
+        }
+        return (int) length;
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static byte[] readBytes(InputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(bytes, read, length - read);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+        return bytes;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class HitBatchResultDto {
+
+    Integer received;
+
+    Integer saved;
+
+    Integer duplicates;
+
+    List<HitFailureDto> failures;
+}
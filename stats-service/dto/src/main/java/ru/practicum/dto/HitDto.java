@@ -6,6 +6,7 @@ import lombok.experimental.FieldDefaults;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
 
 import static ru.practicum.Util.DATE_FORMAT;
@@ -19,6 +20,9 @@ public class HitDto {
 
     Long id;
 
+    @Size(max = 64, message = "hitId cannot be longer than 64 characters.")
+    String hitId;
+
     @NotBlank(message = "app cannot be empty and consist only of spaces.")
     String app;
 
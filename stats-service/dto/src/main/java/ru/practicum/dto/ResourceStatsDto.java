@@ -0,0 +1,18 @@
+package ru.practicum.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ResourceStatsDto {
+
+    String type;
+
+    Long id;
+
+    Long hits;
+}
@@ -0,0 +1,18 @@
+package ru.practicum.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SketchDto {
+
+    String app;
+
+    String uri;
+
+    byte[] sketch;
+}
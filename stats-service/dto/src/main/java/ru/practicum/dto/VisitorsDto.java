@@ -0,0 +1,20 @@
+package ru.practicum.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class VisitorsDto {
+
+    List<String> uris;
+
+    Long visitors;
+
+    Boolean approximate;
+}
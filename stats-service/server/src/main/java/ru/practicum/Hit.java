@@ -19,18 +19,33 @@ public class Hit {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "app", nullable = false)
+    @Column(name = "app_id", nullable = false)
+    private Integer appId;
+
+    @Column(name = "uri_id", nullable = false)
+    private Integer uriId;
+
+    @Transient
     private String app;
 
-    @Column(name = "uri", nullable = false)
+    @Transient
     private String uri;
 
+    @Column(name = "resource_type")
+    private String resourceType;
+
+    @Column(name = "resource_id")
+    private Long resourceId;
+
     @Column(name = "ip", nullable = false)
     private String ip;
 
     @Column(name = "time_stamp", nullable = false)
     private LocalDateTime timestamp;
 
+    @Column(name = "hit_id")
+    private String hitId;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
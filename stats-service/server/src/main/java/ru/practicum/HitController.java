@@ -1,24 +1,63 @@
 package ru.practicum;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.dto.HistogramDto;
+import ru.practicum.dto.HitBatchCodec;
+import ru.practicum.dto.HitBatchResultDto;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.ResourceStatsDto;
+import ru.practicum.dto.SketchDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.StatsQueryDto;
+import ru.practicum.dto.StatsQueryResultDto;
+import ru.practicum.dto.TrendingDto;
+import ru.practicum.dto.VisitorsDto;
+import ru.practicum.exception.StatsValidationException;
+import ru.practicum.stream.StatsStream;
 
 import javax.validation.Valid;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static ru.practicum.Util.FORMATTER;
 
 @Slf4j
 @RestController
-@RequiredArgsConstructor
 public class HitController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final HitService hitService;
+    private final ObjectMapper objectMapper;
+    private final int maxBatchSize;
+
+    public HitController(HitService hitService,
+                         ObjectMapper objectMapper,
+                         @Value("${stats.ingest.max-batch-size:10000}") int maxBatchSize) {
+        this.hitService = hitService;
+        this.objectMapper = objectMapper;
+        this.maxBatchSize = maxBatchSize;
+    }
 
     @PostMapping("/hit")
     @ResponseStatus(value = HttpStatus.CREATED)
@@ -27,15 +66,221 @@ public class HitController {
         hitService.addHit(hitDto);
     }
 
+    /**
+     * Reads the array one element at a time, like the NDJSON stream: an element that does not bind to a hit
+     * becomes a per-item failure, and only a body that is not a well-formed JSON array fails as a whole.
+     */
+    @PostMapping(value = "/hits", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public HitBatchResultDto addHits(InputStream body) throws IOException {
+        List<HitDto> hitDtos = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new StatsValidationException("Hits batch must be a JSON array");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (hitDtos.size() == maxBatchSize) {
+                    throw new StatsValidationException(String.format("Batch size exceeds limit %s", maxBatchSize));
+                }
+                JsonNode node = objectMapper.readTree(parser);
+                hitDtos.add(readHit(node));
+            }
+        } catch (JsonParseException e) {
+            throw new StatsValidationException("Malformed hits batch: " + e.getOriginalMessage());
+        }
+        log.info("Hits batch of {} received", hitDtos.size());
+        return hitService.addHits(hitDtos);
+    }
+
+    @PostMapping(value = "/hits", consumes = HitBatchCodec.MEDIA_TYPE)
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public HitBatchResultDto addHitsBinary(@RequestBody List<HitDto> hitDtos) {
+        log.info("Binary hits batch of {} received", hitDtos.size());
+        return hitService.addHits(hitDtos);
+    }
+
+    @PostMapping(value = "/hits", consumes = APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public HitBatchResultDto addHitsStream(InputStream body) throws IOException {
+        List<HitDto> hitDtos = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (hitDtos.size() == maxBatchSize) {
+                    // stop before the rest of an oversized body is buffered
+                    throw new StatsValidationException(String.format("Batch size exceeds limit %s", maxBatchSize));
+                }
+                hitDtos.add(readHit(line));
+            }
+        }
+        log.info("Hits stream of {} received", hitDtos.size());
+        return hitService.addHits(hitDtos);
+    }
+
     @GetMapping("/stats")
     @ResponseStatus(value = HttpStatus.OK)
     public List<StatsDto> getStats(@RequestParam("start") String start,
                                    @RequestParam("end") String end,
                                    @RequestParam(required = false) List<String> uris,
-                                   @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+                                   @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                   @RequestParam(required = false, defaultValue = "false") Boolean approximate,
+                                   @RequestParam(required = false, defaultValue = "uri") String groupBy) {
         LocalDateTime startTime = LocalDateTime.parse(start, FORMATTER);
         LocalDateTime endTime = LocalDateTime.parse(end, FORMATTER);
         log.info("Get stats");
-        return hitService.getStats(startTime, endTime, uris, unique);
+        return hitService.getStats(startTime, endTime, uris, unique, approximate, groupBy);
+    }
+
+    @PostMapping("/stats/query")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<StatsQueryResultDto> queryStats(@RequestBody List<StatsQueryDto> queries) {
+        log.info("Stats batch of {} queries received", queries.size());
+        return hitService.queryStats(queries);
+    }
+
+    @GetMapping("/stats/top")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<StatsDto> getTopStats(@RequestParam("start") String start,
+                                      @RequestParam("end") String end,
+                                      @RequestParam(required = false, defaultValue = "10") Integer limit,
+                                      @RequestParam(required = false) String prefix,
+                                      @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                      @RequestParam(required = false, defaultValue = "false") Boolean approximate) {
+        LocalDateTime startTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endTime = LocalDateTime.parse(end, FORMATTER);
+        log.info("Get top stats");
+        return hitService.getTopStats(startTime, endTime, prefix, limit, unique, approximate);
+    }
+
+    @GetMapping("/stats/trending")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<TrendingDto> getTrending(@RequestParam(required = false) String prefix,
+                                         @RequestParam(required = false, defaultValue = "10") Integer limit) {
+        log.info("Get trending");
+        return hitService.getTrending(prefix, limit);
+    }
+
+    @GetMapping("/stats/histogram")
+    @ResponseStatus(value = HttpStatus.OK)
+    public HistogramDto getHistogram(@RequestParam("start") String start,
+                                     @RequestParam("end") String end,
+                                     @RequestParam(required = false) List<String> uris,
+                                     @RequestParam(required = false, defaultValue = "hour") String interval,
+                                     @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+        LocalDateTime startTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endTime = LocalDateTime.parse(end, FORMATTER);
+        log.info("Get histogram");
+        return hitService.getHistogram(startTime, endTime, uris, interval, unique);
+    }
+
+    @GetMapping(value = "/stats", params = "stream=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStats(@RequestParam("start") String start,
+                                                             @RequestParam("end") String end,
+                                                             @RequestParam(required = false) List<String> uris,
+                                                             @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+        StatsStream stats = openStats(start, end, uris, unique);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+                    generator.writeStartArray();
+                    writeStats(stats, generator, false);
+                    generator.writeEndArray();
+                    generator.flush();
+                });
+    }
+
+    @GetMapping(value = "/stats", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStatsLines(@RequestParam("start") String start,
+                                                                  @RequestParam("end") String end,
+                                                                  @RequestParam(required = false) List<String> uris,
+                                                                  @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+        StatsStream stats = openStats(start, end, uris, unique);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(out -> {
+                    JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+                    writeStats(stats, generator, true);
+                    generator.flush();
+                });
+    }
+
+    @GetMapping("/stats/sketches")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<SketchDto> getSketches(@RequestParam("start") String start,
+                                       @RequestParam("end") String end,
+                                       @RequestParam(required = false) List<String> uris) {
+        LocalDateTime startTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endTime = LocalDateTime.parse(end, FORMATTER);
+        log.info("Get sketches");
+        return hitService.getSketches(startTime, endTime, uris);
+    }
+
+    @GetMapping("/stats/visitors")
+    @ResponseStatus(value = HttpStatus.OK)
+    public VisitorsDto getVisitors(@RequestParam("start") String start,
+                                   @RequestParam("end") String end,
+                                   @RequestParam(required = false) List<String> uris,
+                                   @RequestParam(required = false, defaultValue = "false") Boolean approximate) {
+        LocalDateTime startTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endTime = LocalDateTime.parse(end, FORMATTER);
+        log.info("Get visitors");
+        return hitService.getVisitors(startTime, endTime, uris, approximate);
+    }
+
+    @GetMapping("/stats/resources")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<ResourceStatsDto> getResourceStats(@RequestParam("start") String start,
+                                                   @RequestParam("end") String end,
+                                                   @RequestParam("type") String type,
+                                                   @RequestParam List<Long> ids,
+                                                   @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+        LocalDateTime startTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endTime = LocalDateTime.parse(end, FORMATTER);
+        log.info("Get resource stats");
+        return hitService.getResourceStats(startTime, endTime, type, ids, unique);
+    }
+
+    private StatsStream openStats(String start, String end, List<String> uris, Boolean unique) {
+        LocalDateTime startTime = LocalDateTime.parse(start, FORMATTER);
+        LocalDateTime endTime = LocalDateTime.parse(end, FORMATTER);
+        log.info("Stream stats");
+        return hitService.streamStats(startTime, endTime, uris, unique);
+    }
+
+    private void writeStats(StatsStream stats, JsonGenerator generator, boolean lines) throws IOException {
+        try {
+            stats.forEach(statsDto -> {
+                try {
+                    generator.writeObject(statsDto);
+                    if (lines) {
+                        generator.writeRaw('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private HitDto readHit(JsonNode node) {
+        try {
+            return objectMapper.treeToValue(node, HitDto.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private HitDto readHit(String line) {
+        try {
+            return objectMapper.readValue(line, HitDto.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
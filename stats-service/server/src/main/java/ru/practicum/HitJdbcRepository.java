@@ -0,0 +1,121 @@
+package ru.practicum;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class HitJdbcRepository {
+
+    private static final String INSERT_HIT = "INSERT INTO hits " +
+            "(app_id, uri_id, resource_type, resource_id, ip, time_stamp) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_KEYED_HITS = "INSERT INTO hits " +
+            "(app_id, uri_id, resource_type, resource_id, ip, time_stamp, hit_id) " +
+            "SELECT * FROM unnest(?::integer[], ?::integer[], ?::varchar[], ?::bigint[], ?::varchar[], " +
+            "?::timestamp[], ?::varchar[]) " +
+            "ON CONFLICT (hit_id, time_stamp) WHERE hit_id IS NOT NULL DO NOTHING " +
+            "RETURNING hit_id, time_stamp";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public HitJdbcRepository(JdbcTemplate jdbcTemplate,
+                             @Value("${stats.ingest.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Saves the hits and returns the ones that were actually inserted: hits carrying a hit id that is already
+     * stored for the same timestamp are skipped.
+     */
+    public List<Hit> saveAll(List<Hit> hits) {
+        if (hits.isEmpty()) {
+            return hits;
+        }
+        List<Hit> plain = new ArrayList<>(hits.size());
+        List<Hit> keyed = new ArrayList<>();
+        for (Hit hit : hits) {
+            if (hit.getHitId() == null) {
+                plain.add(hit);
+            } else {
+                keyed.add(hit);
+            }
+        }
+        if (!plain.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_HIT, plain, batchSize, (ps, hit) -> {
+                ps.setInt(1, hit.getAppId());
+                ps.setInt(2, hit.getUriId());
+                ps.setString(3, hit.getResourceType());
+                if (hit.getResourceId() != null) {
+                    ps.setLong(4, hit.getResourceId());
+                } else {
+                    ps.setNull(4, Types.BIGINT);
+                }
+                ps.setString(5, hit.getIp());
+                ps.setTimestamp(6, Timestamp.valueOf(hit.getTimestamp()));
+            });
+        }
+        if (keyed.isEmpty()) {
+            return hits;
+        }
+        List<Hit> saved = new ArrayList<>(plain);
+        for (int from = 0; from < keyed.size(); from += batchSize) {
+            saved.addAll(saveKeyed(keyed.subList(from, Math.min(from + batchSize, keyed.size()))));
+        }
+        return saved;
+    }
+
+    private List<Hit> saveKeyed(List<Hit> hits) {
+        Map<String, Hit> byKey = new HashMap<>();
+        for (Hit hit : hits) {
+            byKey.putIfAbsent(key(hit.getHitId(), Timestamp.valueOf(hit.getTimestamp())), hit);
+        }
+        return jdbcTemplate.query(connection -> prepareKeyed(connection, hits),
+                (rs, rowNum) -> byKey.get(key(rs.getString("hit_id"), rs.getTimestamp("time_stamp"))));
+    }
+
+    private static PreparedStatement prepareKeyed(Connection connection, List<Hit> hits) throws SQLException {
+        int size = hits.size();
+        Integer[] appIds = new Integer[size];
+        Integer[] uriIds = new Integer[size];
+        String[] resourceTypes = new String[size];
+        Long[] resourceIds = new Long[size];
+        String[] ips = new String[size];
+        Timestamp[] timestamps = new Timestamp[size];
+        String[] hitIds = new String[size];
+        for (int i = 0; i < size; i++) {
+            Hit hit = hits.get(i);
+            appIds[i] = hit.getAppId();
+            uriIds[i] = hit.getUriId();
+            resourceTypes[i] = hit.getResourceType();
+            resourceIds[i] = hit.getResourceId();
+            ips[i] = hit.getIp();
+            timestamps[i] = Timestamp.valueOf(hit.getTimestamp());
+            hitIds[i] = hit.getHitId();
+        }
+        PreparedStatement ps = connection.prepareStatement(INSERT_KEYED_HITS);
+        ps.setArray(1, connection.createArrayOf("integer", appIds));
+        ps.setArray(2, connection.createArrayOf("integer", uriIds));
+        ps.setArray(3, connection.createArrayOf("varchar", resourceTypes));
+        ps.setArray(4, connection.createArrayOf("bigint", resourceIds));
+        ps.setArray(5, connection.createArrayOf("varchar", ips));
+        ps.setArray(6, connection.createArrayOf("timestamp", timestamps));
+        ps.setArray(7, connection.createArrayOf("varchar", hitIds));
+        return ps;
+    }
+
+    private static String key(String hitId, Timestamp timestamp) {
+        return hitId + '@' + timestamp.getTime();
+    }
+}
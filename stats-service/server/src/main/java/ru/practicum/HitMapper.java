@@ -10,6 +10,7 @@ public class HitMapper {
     public static HitDto returnHitDto(Hit hit) {
         HitDto hitDto = HitDto.builder()
                 .id(hit.getId())
+                .hitId(hit.getHitId())
                 .app(hit.getApp())
                 .uri(hit.getUri())
                 .ip(hit.getIp())
@@ -21,6 +22,7 @@ public class HitMapper {
     public static Hit returnHit(HitDto hitDto) {
         Hit hit = Hit.builder()
                 .id(hitDto.getId())
+                .hitId(hitDto.getHitId())
                 .app(hitDto.getApp())
                 .uri(hitDto.getUri())
                 .ip(hitDto.getIp())
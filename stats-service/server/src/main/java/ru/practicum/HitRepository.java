@@ -1,10 +1,11 @@
 package ru.practicum;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.ResourceStatsDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -12,41 +13,104 @@ import java.util.List;
 @Repository
 public interface HitRepository extends JpaRepository<Hit, Long> {
 
-    @Query(value = "SELECT new ru.practicum.dto.StatsDto(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
+    @Query(value = "SELECT new ru.practicum.StatsRow(h.appId, h.uriId, COUNT(DISTINCT h.ip)) " +
             "FROM Hit AS h " +
             "WHERE h.timestamp BETWEEN :start AND :end " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
-    List<StatsDto> findAllStatsByUniqIp(@Param("start") LocalDateTime start,
+            "GROUP BY h.appId, h.uriId")
+    List<StatsRow> findAllStatsByUniqIp(@Param("start") LocalDateTime start,
                                         @Param("end") LocalDateTime end);
 
-    @Query(value = "SELECT new ru.practicum.dto.StatsDto(h.app, h.uri, COUNT(h.ip)) " +
+    @Query(value = "SELECT new ru.practicum.StatsRow(h.appId, h.uriId, COUNT(h.ip)) " +
             "FROM Hit AS h " +
             "WHERE h.timestamp BETWEEN :start AND :end " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(h.ip) DESC")
-    List<StatsDto> findAllStats(@Param("start") LocalDateTime start,
+            "GROUP BY h.appId, h.uriId")
+    List<StatsRow> findAllStats(@Param("start") LocalDateTime start,
                                 @Param("end") LocalDateTime end);
 
-    @Query(value = "SELECT new ru.practicum.dto.StatsDto(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
+    @Query(value = "SELECT new ru.practicum.StatsRow(h.appId, h.uriId, COUNT(DISTINCT h.ip)) " +
             "FROM Hit AS h " +
             "WHERE h.timestamp BETWEEN :start AND :end " +
-            "AND h.uri IN :uris " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
-
-    List<StatsDto> findStatsByUrisByUniqIp(@Param("start") LocalDateTime start,
+            "AND h.uriId IN :uriIds " +
+            "GROUP BY h.appId, h.uriId")
+    List<StatsRow> findStatsByUrisByUniqIp(@Param("start") LocalDateTime start,
                                            @Param("end") LocalDateTime end,
-                                           @Param("uris") List<String> uris);
+                                           @Param("uriIds") List<Integer> uriIds);
 
-    @Query(value = "SELECT new ru.practicum.dto.StatsDto(h.app, h.uri, COUNT(h.ip)) " +
+    @Query(value = "SELECT new ru.practicum.StatsRow(h.appId, h.uriId, COUNT(h.ip)) " +
             "FROM Hit AS h " +
             "WHERE h.timestamp BETWEEN :start AND :end " +
-            "AND h.uri IN :uris " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(h.ip) DESC")
-
-    List<StatsDto> findStatsByUris(@Param("start") LocalDateTime start,
+            "AND h.uriId IN :uriIds " +
+            "GROUP BY h.appId, h.uriId")
+    List<StatsRow> findStatsByUris(@Param("start") LocalDateTime start,
                                    @Param("end") LocalDateTime end,
-                                   @Param("uris") List<String> uris);
+                                   @Param("uriIds") List<Integer> uriIds);
+
+    @Query(value = "SELECT new ru.practicum.StatsRow(h.appId, h.uriId, COUNT(h.ip)) " +
+            "FROM Hit AS h " +
+            "WHERE h.timestamp >= :start AND h.timestamp < :end " +
+            "GROUP BY h.appId, h.uriId")
+    List<StatsRow> findAllStatsBefore(@Param("start") LocalDateTime start,
+                                      @Param("end") LocalDateTime end);
+
+    @Query(value = "SELECT new ru.practicum.StatsRow(h.appId, h.uriId, COUNT(h.ip)) " +
+            "FROM Hit AS h " +
+            "WHERE h.timestamp >= :start AND h.timestamp < :end " +
+            "AND h.uriId IN :uriIds " +
+            "GROUP BY h.appId, h.uriId")
+    List<StatsRow> findStatsByUrisBefore(@Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end,
+                                         @Param("uriIds") List<Integer> uriIds);
+
+    @Query(value = "SELECT DISTINCT new ru.practicum.Visitor(h.appId, h.uriId, h.ip) " +
+            "FROM Hit AS h " +
+            "WHERE h.timestamp BETWEEN :start AND :end")
+    List<Visitor> findAllVisitors(@Param("start") LocalDateTime start,
+                                  @Param("end") LocalDateTime end);
+
+    @Query(value = "SELECT DISTINCT new ru.practicum.Visitor(h.appId, h.uriId, h.ip) " +
+            "FROM Hit AS h " +
+            "WHERE h.timestamp BETWEEN :start AND :end " +
+            "AND h.uriId IN :uriIds")
+    List<Visitor> findVisitorsByUris(@Param("start") LocalDateTime start,
+                                     @Param("end") LocalDateTime end,
+                                     @Param("uriIds") List<Integer> uriIds);
+
+    @Query(value = "SELECT DISTINCT new ru.practicum.Visitor(h.appId, h.uriId, h.ip) " +
+            "FROM Hit AS h " +
+            "WHERE h.timestamp >= :start AND h.timestamp < :end")
+    List<Visitor> findAllVisitorsBefore(@Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end);
+
+    @Query(value = "SELECT DISTINCT new ru.practicum.Visitor(h.appId, h.uriId, h.ip) " +
+            "FROM Hit AS h " +
+            "WHERE h.timestamp >= :start AND h.timestamp < :end " +
+            "AND h.uriId IN :uriIds")
+    List<Visitor> findVisitorsByUrisBefore(@Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end,
+                                           @Param("uriIds") List<Integer> uriIds);
+
+    @Query(value = "SELECT new ru.practicum.dto.ResourceStatsDto(h.resourceType, h.resourceId, COUNT(h.ip)) " +
+            "FROM Hit AS h " +
+            "WHERE h.resourceType = :type AND h.resourceId IN :ids " +
+            "AND h.timestamp BETWEEN :start AND :end " +
+            "GROUP BY h.resourceType, h.resourceId")
+    List<ResourceStatsDto> findResourceStats(@Param("start") LocalDateTime start,
+                                             @Param("end") LocalDateTime end,
+                                             @Param("type") String type,
+                                             @Param("ids") List<Long> ids);
+
+    @Query(value = "SELECT new ru.practicum.dto.ResourceStatsDto(h.resourceType, h.resourceId, COUNT(DISTINCT h.ip)) " +
+            "FROM Hit AS h " +
+            "WHERE h.resourceType = :type AND h.resourceId IN :ids " +
+            "AND h.timestamp BETWEEN :start AND :end " +
+            "GROUP BY h.resourceType, h.resourceId")
+    List<ResourceStatsDto> findResourceStatsByUniqIp(@Param("start") LocalDateTime start,
+                                                     @Param("end") LocalDateTime end,
+                                                     @Param("type") String type,
+                                                     @Param("ids") List<Long> ids);
+
+    @Query(value = "SELECT MAX(h.id) FROM Hit AS h")
+    Long findMaxId();
+
+    List<Hit> findByIdGreaterThanAndIdLessThanEqualOrderById(Long fromId, Long toId, Pageable pageable);
 }
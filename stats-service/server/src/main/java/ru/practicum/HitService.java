@@ -1,7 +1,16 @@
 package ru.practicum;
 
+import ru.practicum.dto.HistogramDto;
+import ru.practicum.dto.HitBatchResultDto;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.ResourceStatsDto;
+import ru.practicum.dto.SketchDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.StatsQueryDto;
+import ru.practicum.dto.StatsQueryResultDto;
+import ru.practicum.dto.TrendingDto;
+import ru.practicum.dto.VisitorsDto;
+import ru.practicum.stream.StatsStream;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -10,5 +19,25 @@ public interface HitService {
 
     void addHit(HitDto hitDto);
 
-    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique);
+    HitBatchResultDto addHits(List<HitDto> hitDtos);
+
+    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Boolean approximate,
+                            String groupBy);
+
+    List<StatsQueryResultDto> queryStats(List<StatsQueryDto> queries);
+
+    List<StatsDto> getTopStats(LocalDateTime start, LocalDateTime end, String prefix, Integer limit,
+                               Boolean unique, Boolean approximate);
+
+    List<TrendingDto> getTrending(String prefix, Integer limit);
+
+    HistogramDto getHistogram(LocalDateTime start, LocalDateTime end, List<String> uris, String interval, Boolean unique);
+
+    StatsStream streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique);
+
+    List<SketchDto> getSketches(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    VisitorsDto getVisitors(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean approximate);
+
+    List<ResourceStatsDto> getResourceStats(LocalDateTime start, LocalDateTime end, String type, List<Long> ids, Boolean unique);
 }
@@ -1,52 +1,442 @@
 package ru.practicum;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.dto.HistogramDto;
+import ru.practicum.dto.HitBatchResultDto;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.HitFailureDto;
+import ru.practicum.dto.ResourceStatsDto;
+import ru.practicum.dto.SketchDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.StatsQueryDto;
+import ru.practicum.dto.StatsQueryResultDto;
+import ru.practicum.dto.TrendingDto;
+import ru.practicum.dto.VisitorsDto;
 import ru.practicum.exception.StatsValidationException;
+import ru.practicum.histogram.HistogramInterval;
+import ru.practicum.histogram.HistogramReader;
+import ru.practicum.hotwindow.HotWindow;
+import ru.practicum.bitmap.BitmapStatsReader;
+import ru.practicum.cache.StatsResultCache;
+import ru.practicum.compaction.CompactionJob;
+import ru.practicum.ingest.HitBuffer;
+import ru.practicum.ingest.HitWriter;
+import ru.practicum.rollup.RollupStatsReader;
+import ru.practicum.sketch.SketchStatsReader;
+import ru.practicum.store.HitStore;
+import ru.practicum.stream.StatsStream;
+import ru.practicum.stream.StatsStreamRepository;
+import ru.practicum.trending.TrendingTracker;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @Transactional(readOnly = true)
-@RequiredArgsConstructor
 public class HitServiceImpl implements HitService {
 
+    private final HitStore hitStore;
     private final HitRepository hitRepository;
+    private final HitWriter hitWriter;
+    private final HitBuffer hitBuffer;
+    private final RollupStatsReader rollupStatsReader;
+    private final SketchStatsReader sketchStatsReader;
+    private final BitmapStatsReader bitmapStatsReader;
+    private final StatsStreamRepository statsStreamRepository;
+    private final StatsResultCache statsResultCache;
+    private final HistogramReader histogramReader;
+    private final PrefixAggregator prefixAggregator;
+    private final TrendingTracker trendingTracker;
+    private final CompactionJob compactionJob;
+    private final HotWindow hotWindow;
+    private final StatsDecoder statsDecoder;
+    private final Validator validator;
+    private final int maxBatchSize;
+    private final int maxQueries;
+    private final int maxTopLimit;
+    private final int maxUriFilterSize;
+    private final boolean bitmapUniqueEngine;
+
+    public HitServiceImpl(HitStore hitStore,
+                          HitRepository hitRepository,
+                          HitWriter hitWriter,
+                          HitBuffer hitBuffer,
+                          RollupStatsReader rollupStatsReader,
+                          SketchStatsReader sketchStatsReader,
+                          BitmapStatsReader bitmapStatsReader,
+                          StatsStreamRepository statsStreamRepository,
+                          StatsResultCache statsResultCache,
+                          HistogramReader histogramReader,
+                          PrefixAggregator prefixAggregator,
+                          TrendingTracker trendingTracker,
+                          CompactionJob compactionJob,
+                          HotWindow hotWindow,
+                          StatsDecoder statsDecoder,
+                          Validator validator,
+                          @Value("${stats.ingest.max-batch-size:10000}") int maxBatchSize,
+                          @Value("${stats.query.max-queries:100}") int maxQueries,
+                          @Value("${stats.top.max-limit:1000}") int maxTopLimit,
+                          @Value("${stats.query.max-uri-filter:1000}") int maxUriFilterSize,
+                          @Value("${stats.unique.engine:bitmap}") String uniqueEngine) {
+        this.hitStore = hitStore;
+        this.hitRepository = hitRepository;
+        this.hitWriter = hitWriter;
+        this.hitBuffer = hitBuffer;
+        this.rollupStatsReader = rollupStatsReader;
+        this.sketchStatsReader = sketchStatsReader;
+        this.bitmapStatsReader = bitmapStatsReader;
+        this.statsStreamRepository = statsStreamRepository;
+        this.statsResultCache = statsResultCache;
+        this.histogramReader = histogramReader;
+        this.prefixAggregator = prefixAggregator;
+        this.trendingTracker = trendingTracker;
+        this.compactionJob = compactionJob;
+        this.hotWindow = hotWindow;
+        this.statsDecoder = statsDecoder;
+        this.validator = validator;
+        this.maxBatchSize = maxBatchSize;
+        this.maxQueries = maxQueries;
+        this.maxTopLimit = maxTopLimit;
+        this.maxUriFilterSize = maxUriFilterSize;
+        this.bitmapUniqueEngine = "bitmap".equalsIgnoreCase(uniqueEngine);
+    }
 
     @Transactional
     @Override
     public void addHit(HitDto hitDto) {
-        hitRepository.save(HitMapper.returnHit(hitDto));
+        Hit hit = HitMapper.returnHit(hitDto);
+        if (hitBuffer.isEnabled()) {
+            hitBuffer.add(hit);
+        } else {
+            hitWriter.write(List.of(hit));
+        }
     }
 
+    @Transactional
     @Override
-    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
-        if (start != null && end != null) {
-            if (start.isAfter(end)) {
-                throw new StatsValidationException("Start must be after End");
-            }
+    public HitBatchResultDto addHits(List<HitDto> hitDtos) {
+        if (hitDtos.size() > maxBatchSize) {
+            throw new StatsValidationException(String.format("Batch size %s exceeds limit %s", hitDtos.size(), maxBatchSize));
         }
-        if (uris == null || uris.isEmpty()) {
-            if (unique) {
-                log.info("Get all stats by uniq ip");
-                return hitRepository.findAllStatsByUniqIp(start, end);
+        List<Hit> hits = new ArrayList<>(hitDtos.size());
+        List<Integer> indexes = new ArrayList<>(hitDtos.size());
+        List<HitFailureDto> failures = new ArrayList<>();
+        for (int i = 0; i < hitDtos.size(); i++) {
+            HitDto hitDto = hitDtos.get(i);
+            if (hitDto == null) {
+                failures.add(new HitFailureDto(i, "hit cannot be empty or malformed."));
+                continue;
+            }
+            Set<ConstraintViolation<HitDto>> violations = validator.validate(hitDto);
+            if (violations.isEmpty()) {
+                hits.add(HitMapper.returnHit(hitDto));
+                indexes.add(i);
             } else {
-                log.info("Get all stats");
-                return hitRepository.findAllStats(start, end);
+                failures.add(new HitFailureDto(i, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .collect(Collectors.joining("; "))));
             }
+        }
+        int saved = hits.size();
+        int duplicates = 0;
+        if (hitBuffer.isEnabled()) {
+            for (int i = 0; i < hits.size(); i++) {
+                if (!hitBuffer.add(hits.get(i))) {
+                    failures.add(new HitFailureDto(indexes.get(i), "hit dropped: ingestion buffer is full."));
+                    saved--;
+                }
+            }
+            failures.sort(Comparator.comparing(HitFailureDto::getIndex));
         } else {
-            if (unique) {
-                log.info("Get all stats by uri and uniq ip");
-                return hitRepository.findStatsByUrisByUniqIp(start, end, uris);
+            saved = hitWriter.write(hits);
+            duplicates = hits.size() - saved;
+        }
+        log.info("Saved {} of {} hits, {} duplicates", saved, hitDtos.size(), duplicates);
+        return HitBatchResultDto.builder()
+                .received(hitDtos.size())
+                .saved(saved)
+                .duplicates(duplicates)
+                .failures(failures)
+                .build();
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Boolean approximate,
+                                   String groupBy) {
+        validateRange(start, end);
+        UriFilter filter = statsDecoder.resolveUris(uris);
+        if (filter == null) {
+            return statsDecoder.decode(findStats(start, end, null, unique, approximate));
+        }
+        if (filter.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> uriIds = filter.getIds();
+        List<Integer> queryIds = uriIds.size() <= maxUriFilterSize ? uriIds : null;
+        if (filter.isPatterns() && "prefix".equalsIgnoreCase(groupBy)) {
+            log.info("Get stats grouped by {} uri patterns", filter.getGroups().size());
+            if (!unique) {
+                return prefixAggregator.aggregate(rollupStatsReader, start, end, queryIds, filter);
+            }
+            return approximate
+                    ? prefixAggregator.aggregate(sketchStatsReader, start, end, queryIds, filter)
+                    : prefixAggregator.aggregate(bitmapStatsReader, start, end, queryIds, filter);
+        }
+        Map<StatsKey, Long> totals = findStats(start, end, queryIds, unique, approximate);
+        return statsDecoder.decode(queryIds == null ? selectUris(totals, uriIds) : totals);
+    }
+
+    @Override
+    public List<StatsQueryResultDto> queryStats(List<StatsQueryDto> queries) {
+        if (queries.size() > maxQueries) {
+            throw new StatsValidationException(String.format("Query count %s exceeds limit %s", queries.size(), maxQueries));
+        }
+        Map<StatsQueryGroup, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            StatsQueryDto query = queries.get(i);
+            if (query == null || query.getStart() == null || query.getEnd() == null) {
+                throw new StatsValidationException(String.format("Query %s must have start and end", i));
+            }
+            validateRange(query.getStart(), query.getEnd());
+            StatsQueryGroup group = new StatsQueryGroup(query.getStart(), query.getEnd(),
+                    Boolean.TRUE.equals(query.getUnique()), Boolean.TRUE.equals(query.getApproximate()));
+            groups.computeIfAbsent(group, key -> new ArrayList<>()).add(i);
+        }
+        StatsQueryResultDto[] results = new StatsQueryResultDto[queries.size()];
+        groups.forEach((group, indexes) -> {
+            Set<String> uris = new HashSet<>();
+            for (Integer index : indexes) {
+                List<String> queryUris = queries.get(index).getUris();
+                if (queryUris == null || queryUris.isEmpty()) {
+                    uris = null;
+                    break;
+                }
+                uris.addAll(queryUris);
+            }
+            List<Integer> uriIds = statsDecoder.encodeUris(uris);
+            if (uriIds != null && uriIds.size() > maxUriFilterSize) {
+                uriIds = null;
+            }
+            Map<StatsKey, Long> totals = uriIds != null && uriIds.isEmpty()
+                    ? Map.of()
+                    : findStats(group.getStart(), group.getEnd(), uriIds, group.isUnique(), group.isApproximate());
+            for (Integer index : indexes) {
+                List<Integer> queryIds = statsDecoder.encodeUris(queries.get(index).getUris());
+                results[index] = new StatsQueryResultDto(index,
+                        statsDecoder.decode(queryIds == null ? totals : selectUris(totals, queryIds)));
+            }
+        });
+        log.info("Answered {} stats queries with {} scans", queries.size(), groups.size());
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public List<StatsDto> getTopStats(LocalDateTime start, LocalDateTime end, String prefix, Integer limit,
+                                      Boolean unique, Boolean approximate) {
+        validateRange(start, end);
+        if (limit < 1 || limit > maxTopLimit) {
+            throw new StatsValidationException(String.format("Limit must be between 1 and %s", maxTopLimit));
+        }
+        List<Integer> uriIds = null;
+        Set<Integer> uriFilter = null;
+        if (prefix != null && !prefix.isBlank()) {
+            List<Integer> prefixIds = statsDecoder.encodeUriPrefix(prefix);
+            if (prefixIds.isEmpty()) {
+                return List.of();
+            }
+            if (prefixIds.size() <= maxUriFilterSize) {
+                uriIds = prefixIds;
             } else {
-                log.info("Get all stats by uri");
-                return hitRepository.findStatsByUris(start, end, uris);
+                uriFilter = new HashSet<>(prefixIds);
+            }
+        }
+        log.info("Get top {} stats, prefix {}", limit, prefix);
+        if (!unique) {
+            return statsDecoder.decode(rollupStatsReader.findTop(start, end, uriIds, uriFilter, limit));
+        }
+        return statsDecoder.decode(TopStats.select(findStats(start, end, uriIds, unique, approximate), limit, uriFilter));
+    }
+
+    @Override
+    public List<TrendingDto> getTrending(String prefix, Integer limit) {
+        if (limit < 1 || limit > maxTopLimit) {
+            throw new StatsValidationException(String.format("Limit must be between 1 and %s", maxTopLimit));
+        }
+        Set<Integer> uriIds = null;
+        if (prefix != null && !prefix.isBlank()) {
+            uriIds = new HashSet<>(statsDecoder.encodeUriPrefix(prefix));
+            if (uriIds.isEmpty()) {
+                return List.of();
+            }
+        }
+        log.info("Get top {} trending uris, prefix {}", limit, prefix);
+        List<TrendingDto> trending = new ArrayList<>(limit);
+        trendingTracker.top(limit, uriIds).forEach((uriId, score) ->
+                trending.add(new TrendingDto(statsDecoder.decodeUri(uriId), score)));
+        return trending;
+    }
+
+    @Override
+    public HistogramDto getHistogram(LocalDateTime start, LocalDateTime end, List<String> uris, String interval, Boolean unique) {
+        validateRange(start, end);
+        HistogramInterval histogramInterval;
+        try {
+            histogramInterval = HistogramInterval.valueOf(interval.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new StatsValidationException(String.format("Unknown interval %s", interval));
+        }
+        log.info("Get histogram by {}, unique {}", histogramInterval, unique);
+        return histogramReader.getHistogram(start, end, statsDecoder.encodeUris(uris), histogramInterval, unique);
+    }
+
+    @Override
+    public StatsStream streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        validateRange(start, end);
+        List<Integer> uriIds = statsDecoder.encodeUris(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return StatsStream.EMPTY;
+        }
+        log.info("Stream stats, unique {}", unique);
+        if (compactionJob.isCompacted(start) || !hitStore.isRelational()) {
+            // the streaming queries read raw rows of the hits table, so ranges without them are answered
+            // from rollups, bitmaps and the hit store
+            List<StatsDto> stats = statsDecoder.decode(findStats(start, end, uriIds, unique, false));
+            return stats::forEach;
+        }
+        if (unique) {
+            return consumer -> statsStreamRepository.streamStatsByUniqIp(start, end, uriIds, consumer);
+        }
+        return consumer -> statsStreamRepository.streamStats(start, end, uriIds, consumer);
+    }
+
+    @Override
+    public List<SketchDto> getSketches(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        validateRange(start, end);
+        List<Integer> uriIds = statsDecoder.encodeUris(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return List.of();
+        }
+        log.info("Get sketches");
+        List<SketchDto> sketches = new ArrayList<>();
+        sketchStatsReader.find(start, end, true, uriIds).forEach((key, sketch) -> {
+            StatsDto names = statsDecoder.decode(key, null);
+            sketches.add(new SketchDto(names.getApp(), names.getUri(), sketch.toBytes()));
+        });
+        return sketches;
+    }
+
+    @Override
+    public VisitorsDto getVisitors(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean approximate) {
+        validateRange(start, end);
+        log.info("Get visitors, approximate {}", approximate);
+        List<Integer> uriIds = statsDecoder.encodeUris(uris);
+        long visitors = 0;
+        if (uriIds == null || !uriIds.isEmpty()) {
+            visitors = approximate
+                    ? sketchStatsReader.countVisitors(start, end, uriIds)
+                    : bitmapStatsReader.countVisitors(start, end, uriIds);
+        }
+        return VisitorsDto.builder()
+                .uris(uris)
+                .visitors(visitors)
+                .approximate(approximate)
+                .build();
+    }
+
+    @Override
+    public List<ResourceStatsDto> getResourceStats(LocalDateTime start, LocalDateTime end, String type,
+                                                   List<Long> ids, Boolean unique) {
+        validateRange(start, end);
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        log.info("Get stats for {} {} resources, unique {}", ids.size(), type, unique);
+        if (hitStore.isRelational() && !compactionJob.isCompacted(start)) {
+            // every raw row of the range is in the hits table, so the resource index answers directly
+            List<ResourceStatsDto> stats = unique
+                    ? hitRepository.findResourceStatsByUniqIp(start, end, type, ids)
+                    : hitRepository.findResourceStats(start, end, type, ids);
+            stats.sort(Comparator.comparing(ResourceStatsDto::getHits).reversed());
+            return stats;
+        }
+        Map<Integer, Long> resources = statsDecoder.encodeResources(type, ids);
+        if (resources.isEmpty()) {
+            return List.of();
+        }
+        // raw rows are compacted away or not in the table, so read through the rollups and bitmaps instead
+        List<Integer> uriIds = new ArrayList<>(resources.keySet());
+        Map<Long, Long> totals = new HashMap<>();
+        if (unique) {
+            Map<Long, RoaringBitmap> visitors = new HashMap<>();
+            bitmapStatsReader.find(start, end, true, uriIds).forEach((key, bitmap) ->
+                    visitors.merge(resources.get(key.getUriId()), bitmap, (a, b) -> RoaringBitmap.or(a, b)));
+            visitors.forEach((id, bitmap) -> totals.put(id, bitmap.getLongCardinality()));
+        } else {
+            statsResultCache.getStats(rollupStatsReader, start, end, uriIds).forEach((key, hits) ->
+                    totals.merge(resources.get(key.getUriId()), hits, Long::sum));
+        }
+        List<ResourceStatsDto> stats = new ArrayList<>(totals.size());
+        totals.forEach((id, hits) -> stats.add(new ResourceStatsDto(type, id, hits)));
+        stats.sort(Comparator.comparing(ResourceStatsDto::getHits).reversed());
+        return stats;
+    }
+
+    private Map<StatsKey, Long> findStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                          boolean unique, boolean approximate) {
+        if (!unique) {
+            log.info("Get stats from rollups");
+            return statsResultCache.getStats(rollupStatsReader, start, end, uriIds);
+        }
+        Map<StatsKey, Long> windowed = hotWindow.countUnique(start, end, uriIds);
+        if (windowed != null) {
+            log.info("Get stats by uniq ip from hot window");
+            return windowed;
+        }
+        if (approximate) {
+            log.info("Get approximate stats by uniq ip");
+            return statsResultCache.getStats(sketchStatsReader, start, end, uriIds);
+        }
+        if (bitmapUniqueEngine || compactionJob.isCompacted(start)) {
+            log.info("Get exact stats by uniq ip from bitmaps");
+            return statsResultCache.getStats(bitmapStatsReader, start, end, uriIds);
+        }
+        log.info("Get exact stats by uniq ip from raw hits");
+        Map<StatsKey, Long> totals = new HashMap<>();
+        StatsRow.addAll(totals, hitStore.findStatsByUniqIp(start, end, uriIds));
+        return totals;
+    }
+
+    private Map<StatsKey, Long> selectUris(Map<StatsKey, Long> totals, List<Integer> uriIds) {
+        Set<Integer> selected = new HashSet<>(uriIds);
+        Map<StatsKey, Long> result = new HashMap<>();
+        totals.forEach((key, hits) -> {
+            if (selected.contains(key.getUriId())) {
+                result.put(key, hits);
+            }
+        });
+        return result;
+    }
+
+    private void validateRange(LocalDateTime start, LocalDateTime end) {
+        if (start != null && end != null) {
+            if (start.isAfter(end)) {
+                throw new StatsValidationException("Start must be after End");
             }
         }
     }
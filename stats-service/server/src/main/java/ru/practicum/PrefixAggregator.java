@@ -0,0 +1,38 @@
+package ru.practicum;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.cache.StatsSource;
+import ru.practicum.dto.StatsDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class PrefixAggregator {
+
+    private final StatsDecoder statsDecoder;
+
+    public <A> List<StatsDto> aggregate(StatsSource<A> source, LocalDateTime start, LocalDateTime end,
+                                        List<Integer> uriIds, UriFilter filter) {
+        Map<Integer, Map<Integer, A>> byUri = new HashMap<>();
+        source.find(start, end, true, uriIds).forEach((key, value) ->
+                byUri.computeIfAbsent(key.getUriId(), uriId -> new HashMap<>()).put(key.getAppId(), value));
+        List<StatsDto> result = new ArrayList<>();
+        filter.getGroups().forEach((label, ids) -> {
+            Map<Integer, A> merged = new HashMap<>();
+            for (Integer id : ids) {
+                byUri.getOrDefault(id, Map.of()).forEach((appId, value) -> merged.merge(appId, value, source::merge));
+            }
+            merged.forEach((appId, value) ->
+                    result.add(new StatsDto(statsDecoder.decodeApp(appId), label, source.count(value))));
+        });
+        result.sort(Comparator.comparing(StatsDto::getHits).reversed());
+        return result;
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+public class RangeSplit {
+
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final LocalDateTime bucketStart;
+    private final LocalDateTime bucketEnd;
+
+    private RangeSplit(LocalDateTime start, LocalDateTime end, LocalDateTime bucketStart, LocalDateTime bucketEnd) {
+        this.start = start;
+        this.end = end;
+        this.bucketStart = bucketStart;
+        this.bucketEnd = bucketEnd;
+    }
+
+    public static RangeSplit of(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        LocalDateTime floor = start.truncatedTo(unit);
+        LocalDateTime bucketStart = floor.equals(start) ? start : floor.plus(1, unit);
+        return new RangeSplit(start, end, bucketStart, end.truncatedTo(unit));
+    }
+
+    public boolean hasBuckets() {
+        return bucketStart.isBefore(bucketEnd);
+    }
+
+    public boolean hasHead() {
+        return hasBuckets() && start.isBefore(bucketStart);
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.dictionary.AppDictionary;
+import ru.practicum.dictionary.UriDictionary;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.resource.ResourceRef;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class StatsDecoder {
+
+    private final AppDictionary appDictionary;
+    private final UriDictionary uriDictionary;
+
+    public List<StatsDto> decode(Map<StatsKey, Long> totals) {
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<StatsKey, Long>comparingByValue().reversed())
+                .map(entry -> decode(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    public StatsDto decode(StatsKey key, Long hits) {
+        return new StatsDto(appDictionary.nameOf(key.getAppId()), uriDictionary.nameOf(key.getUriId()), hits);
+    }
+
+    public String decodeApp(int appId) {
+        return appDictionary.nameOf(appId);
+    }
+
+    public String decodeUri(int uriId) {
+        return uriDictionary.nameOf(uriId);
+    }
+
+    public List<Integer> encodeUris(Collection<String> uris) {
+        UriFilter filter = resolveUris(uris);
+        return filter == null ? null : filter.getIds();
+    }
+
+    public UriFilter resolveUris(Collection<String> uris) {
+        if (uris == null || uris.isEmpty()) {
+            return null;
+        }
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        List<String> exact = new ArrayList<>();
+        boolean patterns = false;
+        for (String uri : uris) {
+            if (UriFilter.isPattern(uri)) {
+                patterns = true;
+                List<Integer> ids = uriDictionary.findIdsByPrefix(uri.substring(0, uri.length() - UriFilter.WILDCARD.length()));
+                if (!ids.isEmpty()) {
+                    groups.put(uri, ids);
+                }
+            } else {
+                exact.add(uri);
+            }
+        }
+        if (!exact.isEmpty()) {
+            uriDictionary.findIds(exact).forEach((uri, id) -> groups.put(uri, List.of(id)));
+        }
+        return new UriFilter(groups, patterns);
+    }
+
+    public List<Integer> encodeUriPrefix(String prefix) {
+        return uriDictionary.findIdsByPrefix(prefix);
+    }
+
+    /**
+     * Maps every known uri that addresses one of the resources, as {@link ResourceRef#parse} reads it, to the
+     * resource's id.
+     */
+    public Map<Integer, Long> encodeResources(String type, Collection<Long> ids) {
+        Map<Integer, Long> resources = new HashMap<>();
+        for (Long id : new HashSet<>(ids)) {
+            for (Integer uriId : uriDictionary.findIdsByPrefix("/" + type + "/" + id)) {
+                ResourceRef resource = ResourceRef.parse(uriDictionary.nameOf(uriId));
+                if (resource != null && resource.getType().equals(type) && resource.getId().equals(id)) {
+                    resources.put(uriId, id);
+                }
+            }
+        }
+        return resources;
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum;
+
+import lombok.Value;
+
+@Value
+public class StatsKey {
+
+    Integer appId;
+
+    Integer uriId;
+}
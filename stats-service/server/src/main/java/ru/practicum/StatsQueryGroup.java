@@ -0,0 +1,17 @@
+package ru.practicum;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+public class StatsQueryGroup {
+
+    LocalDateTime start;
+
+    LocalDateTime end;
+
+    boolean unique;
+
+    boolean approximate;
+}
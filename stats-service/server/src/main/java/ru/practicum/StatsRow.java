@@ -0,0 +1,26 @@
+package ru.practicum;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+@Value
+public class StatsRow {
+
+    Integer appId;
+
+    Integer uriId;
+
+    Long hits;
+
+    public StatsKey getKey() {
+        return new StatsKey(appId, uriId);
+    }
+
+    public static void addAll(Map<StatsKey, Long> totals, List<StatsRow> rows) {
+        for (StatsRow row : rows) {
+            totals.merge(row.getKey(), row.getHits(), Long::sum);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+public class TopStats {
+
+    private static final Comparator<Map.Entry<StatsKey, Long>> ORDER = Map.Entry.<StatsKey, Long>comparingByValue()
+            .thenComparing(entry -> entry.getKey().getUriId(), Comparator.reverseOrder())
+            .thenComparing(entry -> entry.getKey().getAppId(), Comparator.reverseOrder());
+
+    public static Map<StatsKey, Long> select(Map<StatsKey, Long> totals, int limit, Set<Integer> uriIds) {
+        PriorityQueue<Map.Entry<StatsKey, Long>> heap = new PriorityQueue<>(limit + 1, ORDER);
+        for (Map.Entry<StatsKey, Long> entry : totals.entrySet()) {
+            if (uriIds != null && !uriIds.contains(entry.getKey().getUriId())) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(entry);
+            } else if (ORDER.compare(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        List<Map.Entry<StatsKey, Long>> top = new ArrayList<>(heap);
+        top.sort(ORDER.reversed());
+        Map<StatsKey, Long> result = new LinkedHashMap<>();
+        top.forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Getter
+public class UriFilter {
+
+    public static final String WILDCARD = "*";
+
+    private final Map<String, List<Integer>> groups;
+    private final boolean patterns;
+
+    public UriFilter(Map<String, List<Integer>> groups, boolean patterns) {
+        this.groups = groups;
+        this.patterns = patterns;
+    }
+
+    public static boolean isPattern(String uri) {
+        return uri.endsWith(WILDCARD);
+    }
+
+    public boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    public List<Integer> getIds() {
+        Set<Integer> ids = new LinkedHashSet<>();
+        groups.values().forEach(ids::addAll);
+        return new ArrayList<>(ids);
+    }
+}
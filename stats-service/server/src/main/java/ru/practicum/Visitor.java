@@ -0,0 +1,17 @@
+package ru.practicum;
+
+import lombok.Value;
+
+@Value
+public class Visitor {
+
+    Integer appId;
+
+    Integer uriId;
+
+    String ip;
+
+    public StatsKey getKey() {
+        return new StatsKey(appId, uriId);
+    }
+}
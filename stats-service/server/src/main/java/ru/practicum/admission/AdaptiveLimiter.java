@@ -0,0 +1,97 @@
+package ru.practicum.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows observed latency. A slowly moving average of request latency is kept as the
+ * baseline; while recent samples stay within tolerance of it the limit grows by roughly its square root,
+ * once they get slower the limit shrinks in proportion. The baseline follows latency increases only slowly,
+ * so a saturated backend shows up as a gradient long before it becomes the new normal. Failed requests cut
+ * the limit multiplicatively.
+ */
+public class AdaptiveLimiter {
+
+    private static final double BASELINE_WEIGHT = 0.01;
+    private static final double SAMPLE_WEIGHT = 0.5;
+    private static final double FAILURE_BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile double limit;
+    private double baselineNanos;
+    private double sampleNanos;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long latencyNanos, boolean failed) {
+        int current = inflight.getAndDecrement();
+        synchronized (this) {
+            if (failed) {
+                limit = Math.max(minLimit, limit * FAILURE_BACKOFF);
+                return;
+            }
+            if (baselineNanos == 0) {
+                baselineNanos = latencyNanos;
+                sampleNanos = latencyNanos;
+                return;
+            }
+            sampleNanos += (latencyNanos - sampleNanos) * SAMPLE_WEIGHT;
+            baselineNanos += (sampleNanos - baselineNanos) * BASELINE_WEIGHT;
+            if (baselineNanos > 2 * sampleNanos) {
+                // load went away, let the baseline catch up with the faster samples
+                baselineNanos *= 0.95;
+            }
+            if (current * 2 < limit) {
+                // the limit is not what holds requests back, so latency says nothing about it
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineNanos / sampleNanos));
+            double target = gradient < 1.0 ? limit * gradient : limit + Math.sqrt(limit);
+            double updated = limit * (1 - smoothing) + target * smoothing;
+            limit = Math.max(minLimit, Math.min(maxLimit, updated));
+        }
+    }
+
+    /**
+     * Seconds a rejected client should wait, roughly the time the current backlog needs to drain.
+     */
+    public synchronized long retryAfterSeconds() {
+        return Math.max(1, (long) Math.ceil(TimeUnit.NANOSECONDS.toMillis((long) baselineNanos) / 1000.0));
+    }
+}
@@ -0,0 +1,145 @@
+package ru.practicum.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.practicum.exception.ErrorResponse;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Bulkheads for the stats server: ingestion and queries get separate adaptive concurrency limits, so a burst
+ * of writes can only take its own share of the connection pool and reads stay responsive. Requests over the
+ * limit are shed with 429 and a Retry-After hint instead of queueing for a connection.
+ */
+@Slf4j
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final AdaptiveLimiter ingestLimiter;
+    private final AdaptiveLimiter queryLimiter;
+    private final Map<String, Counter> shedCounters;
+
+    public AdmissionFilter(ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${stats.admission.enabled:true}") boolean enabled,
+                           @Value("${stats.admission.ingest.initial-limit:4}") int ingestInitialLimit,
+                           @Value("${stats.admission.ingest.min-limit:1}") int ingestMinLimit,
+                           @Value("${stats.admission.ingest.max-limit:8}") int ingestMaxLimit,
+                           @Value("${stats.admission.query.initial-limit:8}") int queryInitialLimit,
+                           @Value("${stats.admission.query.min-limit:2}") int queryMinLimit,
+                           @Value("${stats.admission.query.max-limit:12}") int queryMaxLimit,
+                           @Value("${stats.admission.latency-tolerance:2.0}") double tolerance,
+                           @Value("${stats.admission.smoothing:0.2}") double smoothing) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ingestLimiter = new AdaptiveLimiter("ingest", ingestInitialLimit, ingestMinLimit, ingestMaxLimit,
+                tolerance, smoothing);
+        this.queryLimiter = new AdaptiveLimiter("query", queryInitialLimit, queryMinLimit, queryMaxLimit,
+                tolerance, smoothing);
+        this.shedCounters = Map.of(
+                ingestLimiter.getName(), meterRegistry.counter("stats.admission.shed", "path", ingestLimiter.getName()),
+                queryLimiter.getName(), meterRegistry.counter("stats.admission.shed", "path", queryLimiter.getName()));
+        for (AdaptiveLimiter limiter : new AdaptiveLimiter[]{ingestLimiter, queryLimiter}) {
+            meterRegistry.gauge("stats.admission.limit", Tags.of("path", limiter.getName()),
+                    limiter, AdaptiveLimiter::getLimit);
+            meterRegistry.gauge("stats.admission.inflight", Tags.of("path", limiter.getName()),
+                    limiter, AdaptiveLimiter::getInflight);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || limiterFor(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdaptiveLimiter limiter = limiterFor(request);
+        if (!limiter.tryAcquire()) {
+            shed(limiter, response);
+            return;
+        }
+        long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new Release(limiter, startTime));
+            } else {
+                limiter.release(System.nanoTime() - startTime, failed);
+            }
+        }
+    }
+
+    private AdaptiveLimiter limiterFor(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if ("POST".equals(request.getMethod()) && ("/hit".equals(path) || "/hits".equals(path))) {
+            return ingestLimiter;
+        }
+        if ("/stats".equals(path) || path.startsWith("/stats/")) {
+            return queryLimiter;
+        }
+        return null;
+    }
+
+    private void shed(AdaptiveLimiter limiter, HttpServletResponse response) throws IOException {
+        shedCounters.get(limiter.getName()).increment();
+        log.debug("Shedding {} request, limit {}", limiter.getName(), limiter.getLimit());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(limiter.retryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse(String.format("Too many concurrent %s requests", limiter.getName())));
+    }
+
+    private static class Release implements AsyncListener {
+
+        private final AdaptiveLimiter limiter;
+        private final long startTime;
+
+        Release(AdaptiveLimiter limiter, long startTime) {
+            this.limiter = limiter;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            int status = ((HttpServletResponse) event.getSuppliedResponse()).getStatus();
+            limiter.release(System.nanoTime() - startTime, status >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
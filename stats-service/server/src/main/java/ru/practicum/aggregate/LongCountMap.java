@@ -0,0 +1,122 @@
+package ru.practicum.aggregate;
+
+import ru.practicum.StatsKey;
+import ru.practicum.StatsRow;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hit counts keyed by packed (appId, uriId) in two parallel primitive arrays with linear probing, so counting
+ * millions of rows neither boxes keys nor allocates per entry. Not thread-safe: each partition counts into its
+ * own map and the maps are merged afterwards.
+ */
+public class LongCountMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] counts;
+    private int size;
+    private int mask;
+
+    public LongCountMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongCountMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public static long pack(int appId, int uriId) {
+        return (long) appId << 32 | (uriId & 0xffffffffL);
+    }
+
+    public static LongCountMap of(List<StatsRow> rows) {
+        LongCountMap map = new LongCountMap(rows.size());
+        for (StatsRow row : rows) {
+            map.add(pack(row.getAppId(), row.getUriId()), row.getHits());
+        }
+        return map;
+    }
+
+    public void increment(int appId, int uriId) {
+        add(pack(appId, uriId), 1);
+    }
+
+    public void add(long key, long delta) {
+        // app ids are positive dictionary ids, so no real key packs to the sentinel
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                counts[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Adds the other map into the larger of the two and returns that one.
+     */
+    public LongCountMap merge(LongCountMap other) {
+        LongCountMap target = size >= other.size ? this : other;
+        LongCountMap source = target == this ? other : this;
+        for (int i = 0; i < source.keys.length; i++) {
+            if (source.keys[i] != EMPTY) {
+                target.add(source.keys[i], source.counts[i]);
+            }
+        }
+        return target;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Map<StatsKey, Long> toStats() {
+        Map<StatsKey, Long> totals = new HashMap<>(size * 2);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                totals.put(new StatsKey((int) (keys[i] >>> 32), (int) keys[i]), counts[i]);
+            }
+        }
+        return totals;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                add(oldKeys[i], oldCounts[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new long[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & mask;
+    }
+}
@@ -0,0 +1,128 @@
+package ru.practicum.aggregate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Counts independent in-memory partitions of a stats range on a shared fork-join pool. A query is split into at
+ * most stats.query.parallelism leaf tasks, each counting its share of partitions into one {@link LongCountMap},
+ * and the leaf maps are merged pairwise on the way back up. The pool is sized for the machine, the per-query
+ * parallelism caps how much of it a single query can take.
+ * <p>
+ * Partitions that block on the database never go to the pool: a pool thread would take a connection of its own
+ * on top of the one the request already holds, so they are counted one after another on the calling thread
+ * while the pool works through the rest.
+ */
+@Slf4j
+@Component
+public class ParallelAggregator {
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    public ParallelAggregator(MeterRegistry meterRegistry,
+                              @Value("${stats.query.pool-size:0}") int poolSize,
+                              @Value("${stats.query.parallelism:4}") int parallelism) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads);
+        this.parallelism = Math.max(1, parallelism);
+        meterRegistry.gauge("stats.query.pool.active", pool, ForkJoinPool::getActiveThreadCount);
+        log.info("Stats aggregation pool started with {} threads, {} per query", threads, this.parallelism);
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Counts partitions that are all held in memory.
+     */
+    public <P> LongCountMap aggregate(List<P> partitions, Function<P, LongCountMap> counter) {
+        if (partitions.isEmpty()) {
+            return new LongCountMap();
+        }
+        int leaves = Math.min(parallelism, partitions.size());
+        if (leaves == 1) {
+            return new Leaf<>(partitions, counter, 0, partitions.size(), 1).compute();
+        }
+        return pool.invoke(new Leaf<>(partitions, counter, 0, partitions.size(), leaves));
+    }
+
+    /**
+     * Counts the partitions for which blocking is true sequentially on the calling thread and the others on the
+     * pool, at the same time.
+     */
+    public <P> LongCountMap aggregate(List<P> partitions, Predicate<P> blocking, Function<P, LongCountMap> counter) {
+        List<P> inMemory = new ArrayList<>();
+        List<P> sequential = new ArrayList<>();
+        for (P partition : partitions) {
+            (blocking.test(partition) ? sequential : inMemory).add(partition);
+        }
+        if (sequential.isEmpty()) {
+            return aggregate(inMemory, counter);
+        }
+        int leaves = Math.min(parallelism, inMemory.size());
+        ForkJoinTask<LongCountMap> parallel = inMemory.isEmpty()
+                ? null
+                : pool.submit(new Leaf<>(inMemory, counter, 0, inMemory.size(), leaves));
+        LongCountMap counts = new LongCountMap();
+        try {
+            for (P partition : sequential) {
+                counts = counts.merge(counter.apply(partition));
+            }
+        } catch (RuntimeException e) {
+            if (parallel != null) {
+                parallel.cancel(true);
+            }
+            throw e;
+        }
+        return parallel == null ? counts : parallel.join().merge(counts);
+    }
+
+    private static class Leaf<P> extends RecursiveTask<LongCountMap> {
+
+        private final List<P> partitions;
+        private final Function<P, LongCountMap> counter;
+        private final int from;
+        private final int to;
+        private final int leaves;
+
+        Leaf(List<P> partitions, Function<P, LongCountMap> counter, int from, int to, int leaves) {
+            this.partitions = partitions;
+            this.counter = counter;
+            this.from = from;
+            this.to = to;
+            this.leaves = leaves;
+        }
+
+        @Override
+        protected LongCountMap compute() {
+            if (leaves > 1) {
+                int leftLeaves = leaves / 2;
+                int middle = from + (int) ((long) (to - from) * leftLeaves / leaves);
+                Leaf<P> left = new Leaf<>(partitions, counter, from, middle, leftLeaves);
+                left.fork();
+                LongCountMap right = new Leaf<>(partitions, counter, middle, to, leaves - leftLeaves).compute();
+                return left.join().merge(right);
+            }
+            LongCountMap counts = null;
+            for (int i = from; i < to; i++) {
+                LongCountMap partition = counter.apply(partitions.get(i));
+                counts = counts == null ? partition : counts.merge(partition);
+            }
+            return counts == null ? new LongCountMap() : counts;
+        }
+    }
+}
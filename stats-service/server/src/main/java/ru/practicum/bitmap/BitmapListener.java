@@ -0,0 +1,41 @@
+package ru.practicum.bitmap;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+import ru.practicum.Hit;
+import ru.practicum.dictionary.IpDictionary;
+import ru.practicum.ingest.HitListener;
+import ru.practicum.rollup.RollupKey;
+
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class BitmapListener implements HitListener {
+
+    private final BitmapRepository bitmapRepository;
+    private final IpDictionary ipDictionary;
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        Map<String, Integer> ipIds = ipDictionary.idsOf(hits.stream()
+                .map(Hit::getIp)
+                .collect(Collectors.toSet()));
+        Map<RollupKey, RoaringBitmap> bitmaps = new TreeMap<>(RollupKey.LOCK_ORDER);
+        for (Hit hit : hits) {
+            RollupKey key = new RollupKey(hit.getAppId(), hit.getUriId(), hit.getTimestamp().truncatedTo(ChronoUnit.DAYS));
+            bitmaps.computeIfAbsent(key, k -> new RoaringBitmap()).add(ipIds.get(hit.getIp()));
+        }
+        bitmapRepository.merge(bitmaps);
+    }
+
+    @Override
+    public boolean needsBackfill() {
+        return bitmapRepository.isEmpty();
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.bitmap;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.StatsKey;
+import ru.practicum.rollup.RollupKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class BitmapRepository {
+
+    private static final String INSERT_EMPTY = "INSERT INTO hits_visitors_day (app_id, uri_id, bucket, visitors) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (uri_id, bucket, app_id) DO NOTHING";
+    private static final String LOCK = "SELECT app_id, uri_id, bucket, visitors FROM hits_visitors_day " +
+            "WHERE (uri_id, bucket, app_id) IN (:keys) ORDER BY uri_id, bucket, app_id FOR UPDATE";
+    private static final String UPDATE = "UPDATE hits_visitors_day SET visitors = ? WHERE uri_id = ? AND bucket = ? AND app_id = ?";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void merge(Map<RollupKey, RoaringBitmap> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            return;
+        }
+        byte[] empty = Bitmaps.toBytes(new RoaringBitmap());
+        List<Object[]> inserts = new ArrayList<>(bitmaps.size());
+        List<Object[]> keys = new ArrayList<>(bitmaps.size());
+        for (RollupKey key : bitmaps.keySet()) {
+            Timestamp bucket = Timestamp.valueOf(key.getBucket());
+            inserts.add(new Object[]{key.getAppId(), key.getUriId(), bucket, empty});
+            keys.add(new Object[]{key.getUriId(), bucket, key.getAppId()});
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_EMPTY, inserts);
+        List<Object[]> updates = new ArrayList<>(bitmaps.size());
+        jdbcTemplate.query(LOCK, new MapSqlParameterSource("keys", keys), rs -> {
+            RollupKey key = new RollupKey(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    rs.getTimestamp("bucket").toLocalDateTime());
+            RoaringBitmap bitmap = Bitmaps.fromBytes(rs.getBytes("visitors"));
+            bitmap.or(bitmaps.get(key));
+            updates.add(new Object[]{Bitmaps.toBytes(bitmap), key.getUriId(), Timestamp.valueOf(key.getBucket()), key.getAppId()});
+        });
+        jdbcTemplate.getJdbcTemplate().batchUpdate(UPDATE, updates);
+    }
+
+    public Map<StatsKey, RoaringBitmap> findBitmaps(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        StringBuilder sql = new StringBuilder("SELECT app_id, uri_id, visitors FROM hits_visitors_day " +
+                "WHERE bucket >= :from AND bucket < :to");
+        if (uriIds != null && !uriIds.isEmpty()) {
+            sql.append(" AND uri_id IN (:uriIds)");
+            params.addValue("uriIds", uriIds);
+        }
+        Map<StatsKey, RoaringBitmap> result = new HashMap<>();
+        jdbcTemplate.query(sql.toString(), params, rs -> {
+            RoaringBitmap bitmap = Bitmaps.fromBytes(rs.getBytes("visitors"));
+            result.merge(new StatsKey(rs.getInt("app_id"), rs.getInt("uri_id")), bitmap, (existing, added) -> {
+                existing.or(added);
+                return existing;
+            });
+        });
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.getJdbcTemplate()
+                .queryForList("SELECT 1 FROM hits_visitors_day LIMIT 1", Integer.class)
+                .isEmpty();
+    }
+}
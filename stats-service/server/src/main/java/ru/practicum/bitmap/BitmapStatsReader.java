@@ -0,0 +1,79 @@
+package ru.practicum.bitmap;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+import ru.practicum.RangeSplit;
+import ru.practicum.StatsKey;
+import ru.practicum.Visitor;
+import ru.practicum.cache.StatsSource;
+import ru.practicum.dictionary.IpDictionary;
+import ru.practicum.store.HitStore;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class BitmapStatsReader implements StatsSource<RoaringBitmap> {
+
+    private final BitmapRepository bitmapRepository;
+    private final HitStore hitStore;
+    private final IpDictionary ipDictionary;
+
+    public long countVisitors(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        return RoaringBitmap.or(find(start, end, true, uriIds).values().iterator()).getLongCardinality();
+    }
+
+    @Override
+    public String getName() {
+        return "bitmap";
+    }
+
+    @Override
+    public Map<StatsKey, RoaringBitmap> find(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        RangeSplit split = RangeSplit.of(start, end, ChronoUnit.DAYS);
+        if (!split.hasBuckets()) {
+            Map<StatsKey, RoaringBitmap> bitmaps = new HashMap<>();
+            addVisitors(bitmaps, hitStore.findVisitors(start, end, endInclusive, uriIds));
+            return bitmaps;
+        }
+        Map<StatsKey, RoaringBitmap> bitmaps = bitmapRepository.findBitmaps(split.getBucketStart(), split.getBucketEnd(), uriIds);
+        if (split.hasHead()) {
+            addVisitors(bitmaps, hitStore.findVisitors(start, split.getBucketStart(), false, uriIds));
+        }
+        if (endInclusive) {
+            addVisitors(bitmaps, hitStore.findVisitors(split.getBucketEnd(), end, true, uriIds));
+        } else if (split.getBucketEnd().isBefore(end)) {
+            addVisitors(bitmaps, hitStore.findVisitors(split.getBucketEnd(), end, false, uriIds));
+        }
+        return bitmaps;
+    }
+
+    @Override
+    public RoaringBitmap merge(RoaringBitmap left, RoaringBitmap right) {
+        return RoaringBitmap.or(left, right);
+    }
+
+    @Override
+    public long count(RoaringBitmap value) {
+        return value.getLongCardinality();
+    }
+
+    private void addVisitors(Map<StatsKey, RoaringBitmap> bitmaps, List<Visitor> visitors) {
+        Map<String, Integer> ipIds = ipDictionary.findIds(visitors.stream()
+                .map(Visitor::getIp)
+                .collect(Collectors.toSet()));
+        for (Visitor visitor : visitors) {
+            Integer ipId = ipIds.get(visitor.getIp());
+            if (ipId != null) {
+                bitmaps.computeIfAbsent(visitor.getKey(), key -> new RoaringBitmap())
+                        .add(ipId);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ru.practicum.cache;
+
+import lombok.Value;
+import ru.practicum.StatsKey;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Value
+class CacheEntry<A> {
+
+    LocalDateTime start;
+
+    LocalDateTime bucketEnd;
+
+    Map<StatsKey, A> values;
+}
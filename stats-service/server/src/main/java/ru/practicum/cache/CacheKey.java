@@ -0,0 +1,16 @@
+package ru.practicum.cache;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Value
+class CacheKey {
+
+    String source;
+
+    LocalDateTime start;
+
+    List<Integer> uriIds;
+}
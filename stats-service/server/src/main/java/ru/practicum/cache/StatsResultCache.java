@@ -0,0 +1,216 @@
+package ru.practicum.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.Hit;
+import ru.practicum.StatsKey;
+import ru.practicum.ingest.HitListener;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the settled part of a stats query, from its start up to the ingestion watermark,
+ * and recomputes only the fresh tail on every call. A later watermark extends an entry with
+ * the missing slice instead of rescanning it; hits older than the watermark invalidate the entries they fall into,
+ * and so do background jobs that rewrite settled data through {@link #invalidate}.
+ */
+@Slf4j
+@Component
+public class StatsResultCache implements HitListener {
+
+    private final boolean enabled;
+    private final long maxKeys;
+    private final long watermarkLagMillis;
+    private final LinkedHashMap<CacheKey, CacheEntry<?>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter hitCounter;
+    private final Counter extendCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+    private final Counter invalidationCounter;
+    private long keys;
+
+    public StatsResultCache(MeterRegistry meterRegistry,
+                            @Value("${stats.cache.enabled:true}") boolean enabled,
+                            @Value("${stats.cache.max-keys:200000}") long maxKeys,
+                            @Value("${stats.cache.watermark-lag-ms:5000}") long watermarkLagMillis) {
+        this.enabled = enabled;
+        this.maxKeys = maxKeys;
+        this.watermarkLagMillis = watermarkLagMillis;
+        this.hitCounter = meterRegistry.counter("stats.cache.requests", "result", "hit");
+        this.extendCounter = meterRegistry.counter("stats.cache.requests", "result", "extend");
+        this.missCounter = meterRegistry.counter("stats.cache.requests", "result", "miss");
+        this.evictionCounter = meterRegistry.counter("stats.cache.evictions");
+        this.invalidationCounter = meterRegistry.counter("stats.cache.invalidations");
+        meterRegistry.gauge("stats.cache.entries", this, StatsResultCache::size);
+        meterRegistry.gauge("stats.cache.keys", this, StatsResultCache::keyCount);
+    }
+
+    public <A> Map<StatsKey, Long> getStats(StatsSource<A> source, LocalDateTime start, LocalDateTime end,
+                                            List<Integer> uriIds) {
+        LocalDateTime bucketEnd = watermark();
+        if (end.isBefore(bucketEnd)) {
+            bucketEnd = end.truncatedTo(ChronoUnit.MINUTES);
+        }
+        if (!enabled || !start.isBefore(bucketEnd)) {
+            return count(source, source.find(start, end, true, uriIds), Map.of());
+        }
+        CacheKey key = new CacheKey(source.getName(), start, uriIds == null ? null : uriIds.stream()
+                .sorted()
+                .collect(Collectors.toList()));
+        long observed = generation.get();
+        CacheEntry<A> entry = get(key);
+        Map<StatsKey, A> settled;
+        if (entry != null && entry.getBucketEnd().equals(bucketEnd)) {
+            hitCounter.increment();
+            settled = entry.getValues();
+        } else if (entry != null && entry.getBucketEnd().isBefore(bucketEnd)) {
+            extendCounter.increment();
+            Map<StatsKey, A> extended = new HashMap<>(entry.getValues());
+            source.find(entry.getBucketEnd(), bucketEnd, false, uriIds)
+                    .forEach((statsKey, value) -> extended.merge(statsKey, value, source::merge));
+            settled = extended;
+            put(key, new CacheEntry<>(start, bucketEnd, settled), observed);
+        } else {
+            missCounter.increment();
+            settled = source.find(start, bucketEnd, false, uriIds);
+            if (entry == null) {
+                put(key, new CacheEntry<>(start, bucketEnd, settled), observed);
+            }
+        }
+        return count(source, settled, source.find(bucketEnd, end, true, uriIds));
+    }
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime min = null;
+        LocalDateTime max = null;
+        for (Hit hit : hits) {
+            if (min == null || hit.getTimestamp().isBefore(min)) {
+                min = hit.getTimestamp();
+            }
+            if (max == null || hit.getTimestamp().isAfter(max)) {
+                max = hit.getTimestamp();
+            }
+        }
+        if (min == null) {
+            return;
+        }
+        LocalDateTime from = min;
+        LocalDateTime to = max;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(from, to);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(from, to);
+            }
+        });
+    }
+
+    /**
+     * Drops every entry whose settled range overlaps from..to, both inclusive.
+     */
+    public void invalidate(LocalDateTime from, LocalDateTime to) {
+        if (!enabled) {
+            return;
+        }
+        if (!from.isBefore(watermark())) {
+            return;
+        }
+        generation.incrementAndGet();
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Map.Entry<CacheKey, CacheEntry<?>>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                CacheEntry<?> entry = iterator.next().getValue();
+                if (from.isBefore(entry.getBucketEnd()) && !to.isBefore(entry.getStart())) {
+                    keys -= entry.getValues().size();
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        invalidationCounter.increment(removed);
+        log.debug("Changes between {} and {} invalidated {} cached stats", from, to, removed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A> CacheEntry<A> get(CacheKey key) {
+        synchronized (entries) {
+            return (CacheEntry<A>) entries.get(key);
+        }
+    }
+
+    private void put(CacheKey key, CacheEntry<?> entry, long observed) {
+        if (entry.getValues().size() > maxKeys) {
+            return;
+        }
+        synchronized (entries) {
+            if (generation.get() != observed) {
+                return;
+            }
+            CacheEntry<?> previous = entries.put(key, entry);
+            if (previous != null) {
+                keys -= previous.getValues().size();
+            }
+            keys += entry.getValues().size();
+            Iterator<CacheEntry<?>> iterator = entries.values().iterator();
+            while (keys > maxKeys && iterator.hasNext()) {
+                keys -= iterator.next().getValues().size();
+                iterator.remove();
+                evictionCounter.increment();
+            }
+        }
+    }
+
+    private LocalDateTime watermark() {
+        return LocalDateTime.now()
+                .minus(watermarkLagMillis, ChronoUnit.MILLIS)
+                .truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    private static <A> Map<StatsKey, Long> count(StatsSource<A> source, Map<StatsKey, A> settled, Map<StatsKey, A> fresh) {
+        Map<StatsKey, Long> totals = new HashMap<>();
+        settled.forEach((key, value) -> {
+            A tail = fresh.get(key);
+            totals.put(key, source.count(tail == null ? value : source.merge(value, tail)));
+        });
+        fresh.forEach((key, value) -> {
+            if (!settled.containsKey(key)) {
+                totals.put(key, source.count(value));
+            }
+        });
+        return totals;
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private long keyCount() {
+        synchronized (entries) {
+            return keys;
+        }
+    }
+}
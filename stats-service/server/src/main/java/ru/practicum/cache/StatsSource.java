@@ -0,0 +1,18 @@
+package ru.practicum.cache;
+
+import ru.practicum.StatsKey;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface StatsSource<A> {
+
+    String getName();
+
+    Map<StatsKey, A> find(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds);
+
+    A merge(A left, A right);
+
+    long count(A value);
+}
@@ -0,0 +1,184 @@
+package ru.practicum.compaction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.bitmap.BitmapListener;
+import ru.practicum.cache.StatsResultCache;
+import ru.practicum.sketch.SketchListener;
+import ru.practicum.store.DaySegmentSealer;
+import ru.practicum.store.HitStore;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deletes raw hits older than the configured age once their hour is folded into the rollups. Minute and hour
+ * rollups, hourly sketches and daily bitmaps are all maintained on write, so after compaction plain counts
+ * and unique counts stay answerable at rollup resolution. Readers that still need raw rows for a compacted
+ * range go through the hit store, which keeps them in sealed day segments: an hour is only compacted
+ * once its day is sealed, and the job refuses to start without segments.
+ * Work is done hour by hour in small delete batches, each in its own transaction, and the position is saved
+ * after every hour, so the job can be stopped at any time and picks up where it left off.
+ */
+@Slf4j
+@Component
+public class CompactionJob {
+
+    private final CompactionRepository compactionRepository;
+    private final StatsResultCache statsResultCache;
+    private final DaySegmentSealer sealer;
+    private final HitStore hitStore;
+    private final SketchListener sketchListener;
+    private final BitmapListener bitmapListener;
+    private final boolean enabled;
+    private final Duration rawRetention;
+    private final int batchSize;
+    private final long batchPauseMs;
+    private final int maxHoursPerRun;
+    private final Counter deletedCounter;
+    private final Counter refoldedCounter;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile LocalDateTime compactedUntil;
+
+    public CompactionJob(CompactionRepository compactionRepository,
+                         StatsResultCache statsResultCache,
+                         DaySegmentSealer sealer,
+                         HitStore hitStore,
+                         SketchListener sketchListener,
+                         BitmapListener bitmapListener,
+                         MeterRegistry meterRegistry,
+                         @Value("${stats.compaction.enabled:false}") boolean enabled,
+                         @Value("${stats.compaction.raw-retention-days:30}") long rawRetentionDays,
+                         @Value("${stats.compaction.batch-size:5000}") int batchSize,
+                         @Value("${stats.compaction.batch-pause-ms:50}") long batchPauseMs,
+                         @Value("${stats.compaction.max-hours-per-run:24}") int maxHoursPerRun) {
+        this.compactionRepository = compactionRepository;
+        this.statsResultCache = statsResultCache;
+        this.sealer = sealer;
+        this.hitStore = hitStore;
+        this.sketchListener = sketchListener;
+        this.bitmapListener = bitmapListener;
+        this.enabled = enabled;
+        this.rawRetention = Duration.ofDays(rawRetentionDays);
+        this.batchSize = batchSize;
+        this.batchPauseMs = batchPauseMs;
+        this.maxHoursPerRun = maxHoursPerRun;
+        this.deletedCounter = meterRegistry.counter("stats.compaction.deleted");
+        this.refoldedCounter = meterRegistry.counter("stats.compaction.refolded");
+        meterRegistry.gauge("stats.compaction.lag.seconds", this, job -> job.getLagSeconds());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (!sealer.isEnabled()) {
+            throw new IllegalStateException("stats.compaction.enabled requires stats.segments.enabled, " +
+                    "raw hits of compacted hours are only kept in sealed day segments");
+        }
+        if (!hitStore.isRelational()) {
+            throw new IllegalStateException("stats.compaction.enabled requires stats.store.engine=postgres, " +
+                    "compaction verifies and deletes rows of the hits table");
+        }
+        try {
+            compactedUntil = compactionRepository.findCompactedUntil();
+        } catch (DataAccessException e) {
+            log.warn("Failed to load compaction state: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * Raw hits before this time may have been deleted, null if nothing has been compacted.
+     */
+    public LocalDateTime getCompactedUntil() {
+        return compactedUntil;
+    }
+
+    public boolean isCompacted(LocalDateTime time) {
+        LocalDateTime until = compactedUntil;
+        return until != null && time.isBefore(until);
+    }
+
+    @Scheduled(cron = "${stats.compaction.cron:0 20 * * * *}")
+    public void compact() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            LocalDateTime horizon = horizon();
+            LocalDateTime from = compactedUntil;
+            LocalDateTime oldest = compactionRepository.findOldestHit();
+            if (oldest == null) {
+                return;
+            }
+            if (from == null || from.isBefore(oldest)) {
+                from = oldest.truncatedTo(ChronoUnit.HOURS);
+            }
+            int hours = 0;
+            long deleted = 0;
+            while (from.isBefore(horizon) && hours < maxHoursPerRun && sealer.isSealed(from.toLocalDate())) {
+                LocalDateTime to = from.plusHours(1);
+                deleted += compactHour(from, to);
+                compactedUntil = to;
+                from = to;
+                hours++;
+            }
+            if (hours > 0) {
+                log.info("Compacted {} hours of raw hits up to {}, {} rows deleted, {} hours behind horizon",
+                        hours, from, deleted, Duration.between(from, horizon).toHours());
+            }
+        } catch (DataAccessException e) {
+            log.error("Compaction stopped at {}: {}", compactedUntil, e.getMostSpecificCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private long compactHour(LocalDateTime from, LocalDateTime to) throws InterruptedException {
+        if (!compactionRepository.ensureFolded(from, to)) {
+            // sketch and bitmap merges are idempotent, so feeding the whole hour again only adds what is missing
+            compactionRepository.scanHits(from, to, batchSize, hits -> {
+                sketchListener.onHits(hits);
+                bitmapListener.onHits(hits);
+            });
+            refoldedCounter.increment();
+            statsResultCache.invalidate(from, to);
+            log.warn("Rollups for {} did not match raw hits and were rebuilt", from);
+        }
+        long deleted = 0;
+        int batch;
+        do {
+            batch = compactionRepository.deleteBatch(from, to, batchSize);
+            deleted += batch;
+            deletedCounter.increment(batch);
+            if (batch == batchSize && batchPauseMs > 0) {
+                Thread.sleep(batchPauseMs);
+            }
+        } while (batch == batchSize);
+        compactionRepository.saveProgress(to, deleted);
+        return deleted;
+    }
+
+    private LocalDateTime horizon() {
+        return LocalDateTime.now().minus(rawRetention).truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private double getLagSeconds() {
+        LocalDateTime until = compactedUntil;
+        if (!enabled || until == null) {
+            return 0;
+        }
+        return Math.max(0, Duration.between(until, horizon()).getSeconds());
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.compaction;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.Hit;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class CompactionRepository {
+
+    private static final String COUNT_RAW = "SELECT COUNT(*) FROM hits WHERE time_stamp >= ? AND time_stamp < ?";
+    private static final String COUNT_ROLLUP = "SELECT COALESCE(SUM(hits), 0) FROM hits_hour WHERE bucket = ?";
+    private static final String REFOLD = "INSERT INTO %1$s (app_id, uri_id, bucket, hits) " +
+            "SELECT app_id, uri_id, date_trunc('%2$s', time_stamp), COUNT(*) FROM hits " +
+            "WHERE time_stamp >= ? AND time_stamp < ? GROUP BY app_id, uri_id, date_trunc('%2$s', time_stamp) " +
+            "ON CONFLICT (uri_id, bucket, app_id) DO UPDATE SET hits = EXCLUDED.hits";
+    private static final String DELETE_BATCH = "DELETE FROM hits WHERE (id, time_stamp) IN " +
+            "(SELECT id, time_stamp FROM hits WHERE time_stamp >= ? AND time_stamp < ? LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LocalDateTime findCompactedUntil() {
+        List<Timestamp> rows = jdbcTemplate.queryForList(
+                "SELECT compacted_until FROM compaction_state WHERE id = 1", Timestamp.class);
+        return rows.isEmpty() || rows.get(0) == null ? null : rows.get(0).toLocalDateTime();
+    }
+
+    public LocalDateTime findOldestHit() {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(time_stamp) FROM hits", Timestamp.class);
+        return oldest == null ? null : oldest.toLocalDateTime();
+    }
+
+    public void saveProgress(LocalDateTime compactedUntil, long deleted) {
+        jdbcTemplate.update("INSERT INTO compaction_state (id, compacted_until, deleted, updated_at) VALUES (1, ?, ?, ?) " +
+                        "ON CONFLICT (id) DO UPDATE SET compacted_until = EXCLUDED.compacted_until, " +
+                        "deleted = compaction_state.deleted + EXCLUDED.deleted, updated_at = EXCLUDED.updated_at",
+                Timestamp.valueOf(compactedUntil), deleted, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Makes sure the hourly rollup of [from, to) accounts for every raw hit in it, rebuilding the minute and
+     * hour rollups from the raw rows if it does not. Returns false if they had to be rebuilt.
+     */
+    @Transactional
+    public boolean ensureFolded(LocalDateTime from, LocalDateTime to) {
+        Long raw = jdbcTemplate.queryForObject(COUNT_RAW, Long.class, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        Long folded = jdbcTemplate.queryForObject(COUNT_ROLLUP, Long.class, Timestamp.valueOf(from));
+        if (raw == null || raw.equals(folded)) {
+            return true;
+        }
+        jdbcTemplate.update(String.format(REFOLD, "hits_minute", "minute"), Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.update(String.format(REFOLD, "hits_hour", "hour"), Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return false;
+    }
+
+    /**
+     * Feeds the raw hits of [from, to) to the consumer in batches of at most batchSize.
+     */
+    public void scanHits(LocalDateTime from, LocalDateTime to, int batchSize, Consumer<List<Hit>> consumer) {
+        List<Hit> batch = new ArrayList<>(batchSize);
+        jdbcTemplate.query("SELECT app_id, uri_id, ip, time_stamp FROM hits WHERE time_stamp >= ? AND time_stamp < ?",
+                rs -> {
+                    batch.add(Hit.builder()
+                            .appId(rs.getInt("app_id"))
+                            .uriId(rs.getInt("uri_id"))
+                            .ip(rs.getString("ip"))
+                            .timestamp(rs.getTimestamp("time_stamp").toLocalDateTime())
+                            .build());
+                    if (batch.size() == batchSize) {
+                        consumer.accept(new ArrayList<>(batch));
+                        batch.clear();
+                    }
+                }, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    @Transactional
+    public int deleteBatch(LocalDateTime from, LocalDateTime to, int batchSize) {
+        return jdbcTemplate.update(DELETE_BATCH, Timestamp.valueOf(from), Timestamp.valueOf(to), batchSize);
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.dictionary;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AppDictionary extends StringDictionary {
+
+    public AppDictionary(NamedParameterJdbcTemplate jdbcTemplate) {
+        super(jdbcTemplate, "app_dictionary");
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.dictionary;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class IpDictionary extends StringDictionary {
+
+    public IpDictionary(NamedParameterJdbcTemplate jdbcTemplate) {
+        super(jdbcTemplate, "ip_dictionary");
+    }
+}
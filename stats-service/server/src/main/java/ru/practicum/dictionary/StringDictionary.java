@@ -0,0 +1,138 @@
+package ru.practicum.dictionary;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class StringDictionary {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String table;
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, String> names = new ConcurrentHashMap<>();
+
+    public StringDictionary(NamedParameterJdbcTemplate jdbcTemplate, String table) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.table = table;
+    }
+
+    public Map<String, Integer> idsOf(Collection<String> values) {
+        Map<String, Integer> result = new HashMap<>();
+        TreeSet<String> missing = new TreeSet<>();
+        for (String value : values) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                result.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>(missing.size());
+            missing.forEach(value -> rows.add(new Object[]{value}));
+            jdbcTemplate.getJdbcTemplate()
+                    .batchUpdate("INSERT INTO " + table + " (name) VALUES (?) ON CONFLICT (name) DO NOTHING", rows);
+            Map<String, Integer> loaded = new HashMap<>();
+            load(missing, loaded);
+            result.putAll(loaded);
+            cacheAfterCommit(loaded);
+        }
+        return result;
+    }
+
+    public Map<String, Integer> findIds(Collection<String> values) {
+        Map<String, Integer> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String value : values) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                result.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Integer> loaded = new HashMap<>();
+            load(missing, loaded);
+            result.putAll(loaded);
+            loaded.forEach(this::cache);
+        }
+        return result;
+    }
+
+    public void loadAll() {
+        jdbcTemplate.getJdbcTemplate().query("SELECT id, name FROM " + table, rs -> {
+            cache(rs.getString("name"), rs.getInt("id"));
+        });
+    }
+
+    public String nameOf(int id) {
+        String name = names.get(id);
+        if (name == null) {
+            List<String> found = jdbcTemplate.queryForList("SELECT name FROM " + table + " WHERE id = :id",
+                    new MapSqlParameterSource("id", id), String.class);
+            if (found.isEmpty()) {
+                throw new IllegalStateException(String.format("Unknown id %s in %s", id, table));
+            }
+            name = found.get(0);
+            cache(name, id);
+        }
+        return name;
+    }
+
+    private void load(Collection<String> values, Map<String, Integer> result) {
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (String value : values) {
+            chunk.add(value);
+            if (chunk.size() == CHUNK_SIZE) {
+                loadChunk(chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            loadChunk(chunk, result);
+        }
+    }
+
+    private void loadChunk(List<String> chunk, Map<String, Integer> result) {
+        jdbcTemplate.query("SELECT id, name FROM " + table + " WHERE name IN (:names)",
+                new MapSqlParameterSource("names", chunk), rs -> {
+                    result.put(rs.getString("name"), rs.getInt("id"));
+                });
+    }
+
+    private void cacheAfterCommit(Map<String, Integer> loaded) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            loaded.forEach(this::cache);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                loaded.forEach(StringDictionary.this::cache);
+            }
+        });
+    }
+
+    protected void cached(String name, int id) {
+    }
+
+    private void cache(String name, int id) {
+        if (ids.put(name, id) == null) {
+            cached(name, id);
+        }
+        names.put(id, name);
+    }
+}
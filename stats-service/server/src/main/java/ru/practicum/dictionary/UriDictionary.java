@@ -0,0 +1,34 @@
+package ru.practicum.dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+@Slf4j
+@Component
+public class UriDictionary extends StringDictionary {
+
+    private final UriTrie trie = new UriTrie();
+
+    public UriDictionary(NamedParameterJdbcTemplate jdbcTemplate) {
+        super(jdbcTemplate, "uri_dictionary");
+    }
+
+    @PostConstruct
+    public void init() {
+        loadAll();
+        log.info("Loaded {} uris into the uri trie", trie.size());
+    }
+
+    public List<Integer> findIdsByPrefix(String prefix) {
+        return trie.findByPrefix(prefix);
+    }
+
+    @Override
+    protected void cached(String name, int id) {
+        trie.put(name, id);
+    }
+}
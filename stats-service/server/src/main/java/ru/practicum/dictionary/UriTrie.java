@@ -0,0 +1,119 @@
+package ru.practicum.dictionary;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Radix tree of known uris mapped to their dictionary ids, used to expand prefix patterns without a table scan.
+ */
+public class UriTrie {
+
+    private final Node root = new Node("");
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    public void put(String uri, int id) {
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < uri.length()) {
+                Node child = node.children.get(uri.charAt(i));
+                if (child == null) {
+                    child = new Node(uri.substring(i));
+                    node.children.put(uri.charAt(i), child);
+                    node = child;
+                    break;
+                }
+                int common = commonPrefix(child.label, uri, i);
+                if (common < child.label.length()) {
+                    Node split = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    split.children.put(child.label.charAt(0), child);
+                    node.children.put(split.label.charAt(0), split);
+                    child = split;
+                }
+                node = child;
+                i += common;
+            }
+            if (node.id < 0) {
+                size++;
+            }
+            node.id = id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Integer> findByPrefix(String prefix) {
+        List<Integer> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < prefix.length()) {
+                Node child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    return ids;
+                }
+                int common = commonPrefix(child.label, prefix, i);
+                if (i + common == prefix.length()) {
+                    node = child;
+                    break;
+                }
+                if (common < child.label.length()) {
+                    return ids;
+                }
+                node = child;
+                i += common;
+            }
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(node);
+            while (!stack.isEmpty()) {
+                Node current = stack.pop();
+                if (current.id >= 0) {
+                    ids.add(current.id);
+                }
+                current.children.values().forEach(stack::push);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node {
+
+        private String label;
+        private int id = -1;
+        private final Map<Character, Node> children = new HashMap<>(4);
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+}
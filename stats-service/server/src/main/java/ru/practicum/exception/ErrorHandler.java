@@ -13,4 +13,10 @@ public class ErrorHandler {
     public ErrorResponse handleThrowable(final StatsValidationException e) {
         return new ErrorResponse(e.getMessage());
     }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleThrowable(final StatsUnavailableException e) {
+        return new ErrorResponse(e.getMessage());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package ru.practicum.histogram;
+
+import java.time.LocalDateTime;
+
+@FunctionalInterface
+public interface BucketCallback {
+
+    void accept(int appId, int uriId, LocalDateTime bucket, long count);
+}
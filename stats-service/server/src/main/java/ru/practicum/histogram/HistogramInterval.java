@@ -0,0 +1,28 @@
+package ru.practicum.histogram;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum HistogramInterval {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    HistogramInterval(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime next(LocalDateTime bucket) {
+        return bucket.plus(1, unit);
+    }
+
+    public int indexOf(LocalDateTime from, LocalDateTime bucket) {
+        return (int) unit.between(from, bucket);
+    }
+}
@@ -0,0 +1,108 @@
+package ru.practicum.histogram;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsDecoder;
+import ru.practicum.StatsKey;
+import ru.practicum.compaction.CompactionJob;
+import ru.practicum.dto.HistogramDto;
+import ru.practicum.dto.HistogramSeriesDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.exception.StatsValidationException;
+import ru.practicum.store.HitStore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+public class HistogramReader {
+
+    private final HistogramRepository histogramRepository;
+    private final HitStore hitStore;
+    private final CompactionJob compactionJob;
+    private final StatsDecoder statsDecoder;
+    private final int maxBuckets;
+
+    public HistogramReader(HistogramRepository histogramRepository,
+                           HitStore hitStore,
+                           CompactionJob compactionJob,
+                           StatsDecoder statsDecoder,
+                           @Value("${stats.histogram.max-buckets:10080}") int maxBuckets) {
+        this.histogramRepository = histogramRepository;
+        this.hitStore = hitStore;
+        this.compactionJob = compactionJob;
+        this.statsDecoder = statsDecoder;
+        this.maxBuckets = maxBuckets;
+    }
+
+    public HistogramDto getHistogram(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                     HistogramInterval interval, boolean unique) {
+        LocalDateTime from = interval.floor(start);
+        LocalDateTime to = interval.next(interval.floor(end));
+        int buckets = interval.indexOf(from, to);
+        if (buckets > maxBuckets) {
+            throw new StatsValidationException(String.format("Histogram of %s buckets exceeds limit %s", buckets, maxBuckets));
+        }
+        Map<StatsKey, long[]> hits = new HashMap<>();
+        Map<StatsKey, long[]> visitors = new HashMap<>();
+        if (uriIds == null || !uriIds.isEmpty()) {
+            histogramRepository.findHits(interval, from, to, uriIds, (appId, uriId, bucket, count) ->
+                    hits.computeIfAbsent(new StatsKey(appId, uriId), key -> new long[buckets])[interval.indexOf(from, bucket)] += count);
+            if (unique && interval == HistogramInterval.MINUTE
+                    && (compactionJob.isCompacted(from) || !hitStore.isRelational())) {
+                countMinuteVisitors(from, to, uriIds, visitors, buckets);
+            } else if (unique) {
+                histogramRepository.findUnique(interval, from, to, uriIds, (appId, uriId, bucket, count) ->
+                        visitors.computeIfAbsent(new StatsKey(appId, uriId), key -> new long[buckets])[interval.indexOf(from, bucket)] += count);
+            }
+        }
+        List<Map.Entry<StatsKey, long[]>> series = new ArrayList<>(hits.entrySet());
+        series.sort(Comparator.comparingLong((Map.Entry<StatsKey, long[]> entry) -> Arrays.stream(entry.getValue()).sum())
+                .reversed());
+        List<HistogramSeriesDto> result = new ArrayList<>(series.size());
+        for (Map.Entry<StatsKey, long[]> entry : series) {
+            StatsDto names = statsDecoder.decode(entry.getKey(), null);
+            result.add(HistogramSeriesDto.builder()
+                    .app(names.getApp())
+                    .uri(names.getUri())
+                    .hits(entry.getValue())
+                    .unique(unique ? visitors.getOrDefault(entry.getKey(), new long[buckets]) : null)
+                    .build());
+        }
+        return HistogramDto.builder()
+                .interval(interval.name())
+                .start(from)
+                .buckets(buckets)
+                .approximate(unique && interval == HistogramInterval.HOUR)
+                .series(result)
+                .build();
+    }
+
+    /**
+     * Per-minute unique counts from the hit store, which still holds raw hits that compaction removed from the
+     * hits table in sealed day segments, or that never were in the table with the log engine.
+     */
+    private void countMinuteVisitors(LocalDateTime from, LocalDateTime to, List<Integer> uriIds,
+                                     Map<StatsKey, long[]> visitors, int buckets) {
+        Set<Integer> uriFilter = uriIds == null ? null : new HashSet<>(uriIds);
+        Map<StatsKey, Map<Integer, Set<String>>> ips = new HashMap<>();
+        hitStore.scan(from, to, (appId, uriId, ip, time) -> {
+            if (uriFilter == null || uriFilter.contains(uriId)) {
+                ips.computeIfAbsent(new StatsKey(appId, uriId), key -> new HashMap<>())
+                        .computeIfAbsent(HistogramInterval.MINUTE.indexOf(from, time), bucket -> new HashSet<>())
+                        .add(ip);
+            }
+        });
+        ips.forEach((key, minutes) -> {
+            long[] counts = visitors.computeIfAbsent(key, k -> new long[buckets]);
+            minutes.forEach((bucket, minuteIps) -> counts[bucket] = minuteIps.size());
+        });
+    }
+}
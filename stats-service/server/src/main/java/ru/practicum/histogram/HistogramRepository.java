@@ -0,0 +1,95 @@
+package ru.practicum.histogram;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.bitmap.Bitmaps;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class HistogramRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void findHits(HistogramInterval interval, LocalDateTime from, LocalDateTime to,
+                         List<Integer> uriIds, BucketCallback callback) {
+        String sql;
+        switch (interval) {
+            case MINUTE:
+                sql = "SELECT app_id, uri_id, bucket, hits FROM hits_minute WHERE bucket >= :from AND bucket < :to";
+                break;
+            case HOUR:
+                sql = "SELECT app_id, uri_id, bucket, hits FROM hits_hour WHERE bucket >= :from AND bucket < :to";
+                break;
+            default:
+                sql = "SELECT app_id, uri_id, date_trunc('day', bucket) AS bucket, SUM(hits) AS hits FROM hits_hour " +
+                        "WHERE bucket >= :from AND bucket < :to";
+        }
+        MapSqlParameterSource params = params(from, to);
+        StringBuilder query = new StringBuilder(sql);
+        appendUriFilter(query, params, uriIds);
+        if (interval == HistogramInterval.DAY) {
+            query.append(" GROUP BY app_id, uri_id, date_trunc('day', bucket)");
+        }
+        jdbcTemplate.query(query.toString(), params, rs -> {
+            callback.accept(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits"));
+        });
+    }
+
+    public void findUnique(HistogramInterval interval, LocalDateTime from, LocalDateTime to,
+                           List<Integer> uriIds, BucketCallback callback) {
+        MapSqlParameterSource params = params(from, to);
+        StringBuilder query;
+        switch (interval) {
+            case MINUTE:
+                query = new StringBuilder("SELECT app_id, uri_id, date_trunc('minute', time_stamp) AS bucket, " +
+                        "COUNT(DISTINCT ip) AS visitors FROM hits WHERE time_stamp >= :from AND time_stamp < :to");
+                appendUriFilter(query, params, uriIds);
+                query.append(" GROUP BY app_id, uri_id, date_trunc('minute', time_stamp)");
+                jdbcTemplate.query(query.toString(), params, rs -> {
+                    callback.accept(rs.getInt("app_id"), rs.getInt("uri_id"),
+                            rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("visitors"));
+                });
+                break;
+            case HOUR:
+                query = new StringBuilder("SELECT app_id, uri_id, bucket, sketch FROM hits_sketch_hour " +
+                        "WHERE bucket >= :from AND bucket < :to");
+                appendUriFilter(query, params, uriIds);
+                jdbcTemplate.query(query.toString(), params, rs -> {
+                    callback.accept(rs.getInt("app_id"), rs.getInt("uri_id"),
+                            rs.getTimestamp("bucket").toLocalDateTime(),
+                            HyperLogLog.fromBytes(rs.getBytes("sketch")).estimate());
+                });
+                break;
+            default:
+                query = new StringBuilder("SELECT app_id, uri_id, bucket, visitors FROM hits_visitors_day " +
+                        "WHERE bucket >= :from AND bucket < :to");
+                appendUriFilter(query, params, uriIds);
+                jdbcTemplate.query(query.toString(), params, rs -> {
+                    callback.accept(rs.getInt("app_id"), rs.getInt("uri_id"),
+                            rs.getTimestamp("bucket").toLocalDateTime(),
+                            Bitmaps.fromBytes(rs.getBytes("visitors")).getLongCardinality());
+                });
+        }
+    }
+
+    private static MapSqlParameterSource params(LocalDateTime from, LocalDateTime to) {
+        return new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+    }
+
+    private static void appendUriFilter(StringBuilder sql, MapSqlParameterSource params, List<Integer> uriIds) {
+        if (uriIds != null && !uriIds.isEmpty()) {
+            sql.append(" AND uri_id IN (:uriIds)");
+            params.addValue("uriIds", uriIds);
+        }
+    }
+}
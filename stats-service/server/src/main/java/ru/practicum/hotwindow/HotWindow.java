@@ -0,0 +1,339 @@
+package ru.practicum.hotwindow;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.Hit;
+import ru.practicum.StatsKey;
+import ru.practicum.aggregate.LongCountMap;
+import ru.practicum.aggregate.ParallelAggregator;
+import ru.practicum.ingest.HitListener;
+import ru.practicum.store.HitStore;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The last hours of hits kept in memory as primitive columns, one segment per hour: epoch seconds, app and uri
+ * dictionary ids and packed ips. The hit store stays the source of truth: the window is loaded from it on startup
+ * and appended to after every committed write, so queries for recent ranges can skip the database entirely and
+ * older ranges only need rollups up to the window start, which is always on an hour boundary.
+ */
+@Slf4j
+@Component
+public class HotWindow implements HitListener {
+
+    private static final long HOUR_SECONDS = 3600;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long NOT_COVERED = Long.MAX_VALUE;
+
+    private final HitStore hitStore;
+    private final ParallelAggregator aggregator;
+    private final boolean enabled;
+    private final long windowSeconds;
+    private final long maxHits;
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long startSecond = NOT_COVERED;
+    private volatile long size;
+
+    public HotWindow(HitStore hitStore,
+                     ParallelAggregator aggregator,
+                     MeterRegistry meterRegistry,
+                     @Value("${stats.hotwindow.enabled:true}") boolean enabled,
+                     @Value("${stats.hotwindow.hours:6}") long hours,
+                     @Value("${stats.hotwindow.max-hits:5000000}") long maxHits) {
+        this.hitStore = hitStore;
+        this.aggregator = aggregator;
+        this.enabled = enabled;
+        this.windowSeconds = hours * HOUR_SECONDS;
+        this.maxHits = maxHits;
+        meterRegistry.gauge("stats.hotwindow.hits", this, window -> window.size);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long from = floorHour(nowSecond() - windowSeconds);
+        lock.writeLock().lock();
+        try {
+            hitStore.scanSince(toTime(from),
+                    (appId, uriId, ip, time) -> append(appId, uriId, packIp(ip), toSecond(time)));
+            startSecond = from;
+            evictOverflow();
+            log.info("Hot window loaded with {} hits since {}", size, toTime(startSecond));
+        } catch (DataAccessException e) {
+            log.warn("Failed to load hot window: {}", e.getMostSpecificCause().getMessage());
+            segments.clear();
+            size = 0;
+            startSecond = floorHour(nowSecond()) + HOUR_SECONDS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            appendAll(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                appendAll(hits);
+            }
+        });
+    }
+
+    /**
+     * Start of the range the window holds every hit for, null if it holds nothing reliable.
+     */
+    public LocalDateTime getStart() {
+        long start = startSecond;
+        return start == NOT_COVERED ? null : toTime(start);
+    }
+
+    /**
+     * Counts hits from start on, or returns null if the window does not hold every hit since start. Coverage
+     * is checked under the same lock as the count, so expiry cannot slip in between.
+     */
+    public Map<StatsKey, Long> count(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        long from = ceilSecond(start);
+        long to = endInclusive ? toSecond(end) + 1 : ceilSecond(end);
+        Set<Integer> uriFilter = uriIds == null || uriIds.isEmpty() ? null : new HashSet<>(uriIds);
+        lock.readLock().lock();
+        try {
+            if (!covers(from)) {
+                return null;
+            }
+            // writers wait for the read lock, so the hour segments stay put while the pool counts them
+            List<Segment> hours = new ArrayList<>(segments.subMap(floorHour(from), true, to, false).values());
+            return aggregator.aggregate(hours, segment -> segment.count(from, to, uriFilter)).toStats();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts unique ips from start to end inclusive, or returns null like {@link #count}.
+     */
+    public Map<StatsKey, Long> countUnique(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        long from = ceilSecond(start);
+        long to = toSecond(end) + 1;
+        Set<Integer> uriFilter = uriIds == null || uriIds.isEmpty() ? null : new HashSet<>(uriIds);
+        Map<Long, LongBuffer> visitors = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (!covers(from)) {
+                return null;
+            }
+            for (Segment segment : segments.subMap(floorHour(from), true, to, false).values()) {
+                for (int i = 0; i < segment.size; i++) {
+                    long second = segment.seconds[i];
+                    if (second >= from && second < to && (uriFilter == null || uriFilter.contains(segment.uriIds[i]))) {
+                        visitors.computeIfAbsent(LongCountMap.pack(segment.appIds[i], segment.uriIds[i]), key -> new LongBuffer())
+                                .add(segment.ips[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<StatsKey, Long> totals = new HashMap<>(visitors.size() * 2);
+        visitors.forEach((key, ips) -> totals.put(unpack(key), ips.countDistinct()));
+        return totals;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.hotwindow.expire-interval-ms:60000}")
+    public void expire() {
+        if (!enabled || startSecond == NOT_COVERED) {
+            return;
+        }
+        long horizon = floorHour(nowSecond() - windowSeconds);
+        lock.writeLock().lock();
+        try {
+            NavigableMap<Long, Segment> expired = segments.headMap(horizon, false);
+            expired.values().forEach(segment -> size -= segment.size);
+            expired.clear();
+            startSecond = Math.max(startSecond, horizon);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean covers(long from) {
+        return startSecond != NOT_COVERED && from >= startSecond;
+    }
+
+    private void appendAll(List<Hit> hits) {
+        lock.writeLock().lock();
+        try {
+            for (Hit hit : hits) {
+                long second = toSecond(hit.getTimestamp());
+                if (second >= startSecond) {
+                    append(hit.getAppId(), hit.getUriId(), packIp(hit.getIp()), second);
+                }
+            }
+            evictOverflow();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(int appId, int uriId, long ip, long second) {
+        segments.computeIfAbsent(floorHour(second), hour -> new Segment())
+                .add(appId, uriId, ip, second);
+        size++;
+    }
+
+    private void evictOverflow() {
+        while (size > maxHits && segments.size() > 1) {
+            size -= segments.pollFirstEntry().getValue().size;
+            startSecond = segments.firstKey();
+        }
+    }
+
+    /**
+     * Ipv4 addresses as their unsigned 32-bit value, anything else as a 64-bit hash with the sign bit set,
+     * so the two never collide.
+     */
+    static long packIp(String ip) {
+        long packed = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return hashIp(ip);
+                }
+            } else if (c == '.' && value >= 0 && octets < 3) {
+                packed = packed << 8 | value;
+                octets++;
+                value = -1;
+            } else {
+                return hashIp(ip);
+            }
+        }
+        if (octets != 3 || value < 0) {
+            return hashIp(ip);
+        }
+        return packed << 8 | value;
+    }
+
+    private static long hashIp(String ip) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < ip.length(); i++) {
+            hash ^= ip.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash | Long.MIN_VALUE;
+    }
+
+    private static StatsKey unpack(long key) {
+        return new StatsKey((int) (key >>> 32), (int) key);
+    }
+
+    private static long toSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long ceilSecond(LocalDateTime time) {
+        return time.getNano() == 0 ? toSecond(time) : toSecond(time) + 1;
+    }
+
+    private static LocalDateTime toTime(long second) {
+        return LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+    }
+
+    private static long nowSecond() {
+        return toSecond(LocalDateTime.now());
+    }
+
+    private static long floorHour(long second) {
+        return Math.floorDiv(second, HOUR_SECONDS) * HOUR_SECONDS;
+    }
+
+    private static class Segment {
+
+        private long[] seconds = new long[INITIAL_CAPACITY];
+        private int[] appIds = new int[INITIAL_CAPACITY];
+        private int[] uriIds = new int[INITIAL_CAPACITY];
+        private long[] ips = new long[INITIAL_CAPACITY];
+        private int size;
+
+        void add(int appId, int uriId, long ip, long second) {
+            if (size == seconds.length) {
+                int capacity = size * 2;
+                seconds = Arrays.copyOf(seconds, capacity);
+                appIds = Arrays.copyOf(appIds, capacity);
+                uriIds = Arrays.copyOf(uriIds, capacity);
+                ips = Arrays.copyOf(ips, capacity);
+            }
+            seconds[size] = second;
+            appIds[size] = appId;
+            uriIds[size] = uriId;
+            ips[size] = ip;
+            size++;
+        }
+
+        LongCountMap count(long from, long to, Set<Integer> uriFilter) {
+            LongCountMap counts = new LongCountMap();
+            for (int i = 0; i < size; i++) {
+                long second = seconds[i];
+                if (second >= from && second < to && (uriFilter == null || uriFilter.contains(uriIds[i]))) {
+                    counts.increment(appIds[i], uriIds[i]);
+                }
+            }
+            return counts;
+        }
+    }
+
+    private static class LongBuffer {
+
+        private long[] values = new long[8];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long countDistinct() {
+            Arrays.sort(values, 0, size);
+            long distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || values[i] != values[i - 1]) {
+                    distinct++;
+                }
+            }
+            return distinct;
+        }
+    }
+}
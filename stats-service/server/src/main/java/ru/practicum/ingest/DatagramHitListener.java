@@ -0,0 +1,182 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.HitService;
+import ru.practicum.dto.HitBatchCodec;
+import ru.practicum.dto.HitBatchResultDto;
+import ru.practicum.dto.HitDto;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fire-and-forget hit ingestion over UDP. Every datagram holds one {@link HitBatchCodec} batch, a single hit
+ * being a batch of one, and is fed to the same {@link HitService#addHits} pipeline as the HTTP endpoints. The
+ * receiver thread only reads and decodes packets and hands each batch to a single worker through a bounded
+ * queue, so a slow write never stalls the socket. There is no reply: packets that do not decode, do not fit in
+ * the queue or that the pipeline rejects are counted as dropped, and hits the pipeline refused individually are
+ * counted as rejected, repeated hit ids as duplicates. Binds to loopback unless configured otherwise, and packets
+ * from senders outside allowed-sources, when it is set, are counted as denied.
+ */
+@Slf4j
+@Component
+public class DatagramHitListener {
+
+    private static final int MAX_DATAGRAM_SIZE = 65507;
+
+    private final HitService hitService;
+    private final boolean enabled;
+    private final String host;
+    private final int port;
+    private final int receiveBufferSize;
+    private final List<String> allowedSources;
+    private final int maxBatchSize;
+    private final Counter receivedCounter;
+    private final Counter parsedCounter;
+    private final Counter droppedCounter;
+    private final Counter deniedCounter;
+    private final Counter hitsCounter;
+    private final Counter rejectedCounter;
+    private final Counter duplicatesCounter;
+    private final Thread receiver;
+    private final ThreadPoolExecutor worker;
+    private volatile Set<InetAddress> allowed;
+    private volatile DatagramChannel channel;
+
+    public DatagramHitListener(HitService hitService,
+                               MeterRegistry meterRegistry,
+                               @Value("${stats.udp.enabled:false}") boolean enabled,
+                               @Value("${stats.udp.host:127.0.0.1}") String host,
+                               @Value("${stats.udp.port:9091}") int port,
+                               @Value("${stats.udp.receive-buffer-bytes:4194304}") int receiveBufferSize,
+                               @Value("${stats.udp.allowed-sources:}") List<String> allowedSources,
+                               @Value("${stats.udp.queue-capacity:1000}") int queueCapacity,
+                               @Value("${stats.ingest.max-batch-size:10000}") int maxBatchSize) {
+        this.hitService = hitService;
+        this.enabled = enabled;
+        this.host = host;
+        this.port = port;
+        this.receiveBufferSize = receiveBufferSize;
+        this.allowedSources = allowedSources;
+        this.maxBatchSize = maxBatchSize;
+        this.receivedCounter = meterRegistry.counter("stats.udp.packets", "result", "received");
+        this.parsedCounter = meterRegistry.counter("stats.udp.packets", "result", "parsed");
+        this.droppedCounter = meterRegistry.counter("stats.udp.packets", "result", "dropped");
+        this.deniedCounter = meterRegistry.counter("stats.udp.packets", "result", "denied");
+        this.hitsCounter = meterRegistry.counter("stats.udp.hits", "result", "accepted");
+        this.rejectedCounter = meterRegistry.counter("stats.udp.hits", "result", "rejected");
+        this.duplicatesCounter = meterRegistry.counter("stats.udp.hits", "result", "duplicate");
+        this.receiver = new Thread(this::run, "udp-hit-listener");
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "udp-hit-worker"));
+        meterRegistry.gauge("stats.udp.queue.depth", worker.getQueue(), BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Set<InetAddress> sources = new HashSet<>();
+        for (String source : allowedSources) {
+            if (!source.isBlank()) {
+                sources.add(InetAddress.getByName(source.trim()));
+            }
+        }
+        allowed = sources.isEmpty() ? null : sources;
+        channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        channel.bind(new InetSocketAddress(host, port));
+        receiver.setDaemon(true);
+        receiver.start();
+        log.info("Listening for hit datagrams on {}:{}", host, port);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (channel == null) {
+            return;
+        }
+        channel.close();
+        receiver.join();
+        worker.shutdown();
+        if (!worker.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Hit datagram worker did not finish, {} batches left", worker.getQueue().size());
+        }
+        log.info("Hit datagram listener stopped");
+    }
+
+    private void run() {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        while (channel.isOpen()) {
+            buffer.clear();
+            SocketAddress sender;
+            try {
+                sender = channel.receive(buffer);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Failed to receive hit datagram: {}", e.getMessage());
+                continue;
+            }
+            receivedCounter.increment();
+            Set<InetAddress> sources = allowed;
+            if (sources != null && !sources.contains(((InetSocketAddress) sender).getAddress())) {
+                deniedCounter.increment();
+                log.debug("Denied hit datagram from {}", sender);
+                continue;
+            }
+            List<HitDto> hits;
+            try {
+                hits = HitBatchCodec.decode(new ByteArrayInputStream(buffer.array(), 0, buffer.position()),
+                        maxBatchSize);
+            } catch (IOException | RuntimeException e) {
+                // whatever a packet holds, it must not take the receiver thread down with it
+                droppedCounter.increment();
+                log.debug("Dropped malformed hit datagram: {}", e.getMessage());
+                continue;
+            }
+            parsedCounter.increment();
+            List<HitDto> batch = hits;
+            try {
+                worker.execute(() -> write(batch));
+            } catch (RejectedExecutionException e) {
+                droppedCounter.increment();
+                log.debug("Dropped hit datagram of {} hits: worker queue is full", hits.size());
+            }
+        }
+    }
+
+    private void write(List<HitDto> hits) {
+        try {
+            HitBatchResultDto result = hitService.addHits(hits);
+            hitsCounter.increment(result.getSaved() == null ? 0 : result.getSaved());
+            rejectedCounter.increment(result.getFailures() == null ? 0 : result.getFailures().size());
+            duplicatesCounter.increment(result.getDuplicates() == null ? 0 : result.getDuplicates());
+        } catch (RuntimeException e) {
+            droppedCounter.increment();
+            log.debug("Dropped hit datagram of {} hits: {}", hits.size(), e.getMessage());
+        }
+    }
+}
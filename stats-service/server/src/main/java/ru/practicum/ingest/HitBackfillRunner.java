@@ -0,0 +1,95 @@
+package ru.practicum.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.Hit;
+import ru.practicum.HitRepository;
+import ru.practicum.store.HitStore;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class HitBackfillRunner implements ApplicationRunner {
+
+    private final HitRepository hitRepository;
+    private final HitStore hitStore;
+    private final List<HitListener> listeners;
+    private final TransactionTemplate transactionTemplate;
+    private final int pageSize;
+    private List<HitListener> pending = List.of();
+    private Long maxId;
+
+    public HitBackfillRunner(HitRepository hitRepository,
+                             HitStore hitStore,
+                             List<HitListener> listeners,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${stats.backfill.page-size:5000}") int pageSize) {
+        this.hitRepository = hitRepository;
+        this.hitStore = hitStore;
+        this.listeners = listeners;
+        this.transactionTemplate = transactionTemplate;
+        this.pageSize = pageSize;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!hitStore.isRelational()) {
+            checkNothingToReplay();
+            return;
+        }
+        maxId = hitRepository.findMaxId();
+        if (maxId != null) {
+            pending = listeners.stream()
+                    .filter(HitListener::needsBackfill)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.info("Backfilling {} hit listeners up to hit id {}", pending.size(), maxId);
+        long lastId = 0;
+        long replayed = 0;
+        List<Hit> hits;
+        do {
+            hits = hitRepository.findByIdGreaterThanAndIdLessThanEqualOrderById(lastId, maxId, PageRequest.of(0, pageSize));
+            if (!hits.isEmpty()) {
+                List<Hit> page = hits;
+                transactionTemplate.executeWithoutResult(status -> pending.forEach(listener -> listener.onHits(page)));
+                lastId = hits.get(hits.size() - 1).getId();
+                replayed += hits.size();
+            }
+        } while (hits.size() == pageSize);
+        log.info("Backfill finished, {} hits replayed", replayed);
+    }
+
+    /**
+     * Replay pages by hit id, which only the hits table has; a log without ids cannot be replayed without
+     * counting hits written meanwhile twice, so an empty listener next to a non-empty log stops the startup.
+     */
+    private void checkNothingToReplay() {
+        List<String> empty = listeners.stream()
+                .filter(HitListener::needsBackfill)
+                .map(listener -> listener.getClass().getSimpleName())
+                .collect(Collectors.toList());
+        if (empty.isEmpty()) {
+            return;
+        }
+        hitStore.scanSince(LocalDateTime.of(1970, 1, 1, 0, 0), (appId, uriId, ip, time) -> {
+            throw new IllegalStateException(String.format("%s need a backfill, which stats.store.engine=log " +
+                    "does not support", empty));
+        });
+    }
+}
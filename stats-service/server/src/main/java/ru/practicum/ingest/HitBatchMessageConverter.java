@@ -0,0 +1,56 @@
+package ru.practicum.ingest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.HitBatchCodec;
+import ru.practicum.dto.HitDto;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads {@link HitBatchCodec} request bodies into a list of hits, refusing batches over the ingest batch limit
+ * before their hits are read. Read-only on purpose: if it could write lists too, it would offer its media type
+ * for every list-returning endpoint during content negotiation.
+ */
+@Component
+public class HitBatchMessageConverter extends AbstractHttpMessageConverter<List<HitDto>> {
+
+    private final int maxBatchSize;
+
+    public HitBatchMessageConverter(@Value("${stats.ingest.max-batch-size:10000}") int maxBatchSize) {
+        super(MediaType.parseMediaType(HitBatchCodec.MEDIA_TYPE));
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canWrite(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected List<HitDto> readInternal(Class<? extends List<HitDto>> clazz, HttpInputMessage inputMessage)
+            throws IOException {
+        try {
+            return HitBatchCodec.decode(new BufferedInputStream(inputMessage.getBody()), maxBatchSize);
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Malformed hit batch: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(List<HitDto> hits, HttpOutputMessage outputMessage) throws IOException {
+        HitBatchCodec.encode(hits, outputMessage.getBody());
+    }
+}
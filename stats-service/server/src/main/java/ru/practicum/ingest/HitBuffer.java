@@ -0,0 +1,204 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.Hit;
+import ru.practicum.exception.StatsUnavailableException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+public class HitBuffer {
+
+    private final HitWriter hitWriter;
+    private final boolean enabled;
+    private final BlockingQueue<Hit> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final int retryAttempts;
+    private final long retryBackoffMs;
+    private final Timer flushTimer;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+    private final Counter requeuedCounter;
+    private final Thread flusher;
+    private volatile boolean running;
+
+    public HitBuffer(HitWriter hitWriter,
+                     MeterRegistry meterRegistry,
+                     @Value("${stats.ingest.mode:sync}") String mode,
+                     @Value("${stats.ingest.buffer.capacity:100000}") int capacity,
+                     @Value("${stats.ingest.buffer.overflow:reject}") String overflowPolicy,
+                     @Value("${stats.ingest.buffer.flush-size:1000}") int flushSize,
+                     @Value("${stats.ingest.buffer.flush-interval-ms:200}") long flushIntervalMs,
+                     @Value("${stats.ingest.buffer.retry-attempts:5}") int retryAttempts,
+                     @Value("${stats.ingest.buffer.retry-backoff-ms:100}") long retryBackoffMs) {
+        this.hitWriter = hitWriter;
+        this.enabled = "async".equalsIgnoreCase(mode);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.toUpperCase());
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.retryAttempts = Math.max(1, retryAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+        this.flushTimer = meterRegistry.timer("stats.ingest.buffer.flush");
+        this.droppedCounter = meterRegistry.counter("stats.ingest.buffer.dropped");
+        this.rejectedCounter = meterRegistry.counter("stats.ingest.buffer.rejected");
+        this.failedCounter = meterRegistry.counter("stats.ingest.buffer.failed");
+        this.requeuedCounter = meterRegistry.counter("stats.ingest.buffer.requeued");
+        this.flusher = new Thread(this::run, "hit-buffer-flusher");
+        meterRegistry.gauge("stats.ingest.buffer.depth", queue, BlockingQueue::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean add(Hit hit) {
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(hit);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new StatsUnavailableException("Interrupted while waiting for ingestion buffer");
+                }
+            case DROP:
+                if (queue.offer(hit)) {
+                    return true;
+                }
+                droppedCounter.increment();
+                return false;
+            default:
+                if (queue.offer(hit)) {
+                    return true;
+                }
+                rejectedCounter.increment();
+                throw new StatsUnavailableException("Ingestion buffer is full");
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            running = true;
+            flusher.start();
+            log.info("Hit buffer started in async mode, overflow policy {}", overflowPolicy);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        flusher.join();
+        List<Hit> batch = new ArrayList<>(flushSize);
+        while (queue.drainTo(batch, flushSize) > 0) {
+            flush(batch);
+        }
+        log.info("Hit buffer stopped");
+    }
+
+    private void run() {
+        List<Hit> batch = new ArrayList<>(flushSize);
+        while (running) {
+            try {
+                Hit first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= flushSize || remaining <= 0) {
+                        break;
+                    }
+                    Hit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            flush(batch);
+        }
+    }
+
+    /**
+     * Writes the batch, retrying with doubling backoff. The hits were already acknowledged to their senders, so
+     * a batch that still fails is put back into the buffer while the flusher runs; only what does not fit, or
+     * what fails during shutdown, is lost.
+     */
+    private void flush(List<Hit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            long backoff = retryBackoffMs;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    hitWriter.write(batch);
+                    return;
+                } catch (RuntimeException e) {
+                    if (attempt >= retryAttempts) {
+                        log.error("Failed to flush {} hits after {} attempts", batch.size(), attempt, e);
+                        break;
+                    }
+                    log.warn("Failed to flush {} hits, attempt {} of {}: {}",
+                            batch.size(), attempt, retryAttempts, e.getMessage());
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                    break;
+                }
+                backoff *= 2;
+            }
+            requeue(batch);
+        } finally {
+            flushTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            batch.clear();
+        }
+    }
+
+    private void requeue(List<Hit> batch) {
+        int requeued = 0;
+        if (running) {
+            while (requeued < batch.size() && queue.offer(batch.get(requeued))) {
+                requeued++;
+            }
+        }
+        requeuedCounter.increment(requeued);
+        int lost = batch.size() - requeued;
+        if (lost > 0) {
+            failedCounter.increment(lost);
+            log.error("Lost {} of {} buffered hits that could not be written", lost, batch.size());
+        } else {
+            log.warn("Requeued {} hits that could not be written", requeued);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.Hit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers recently written hit ids in two generations of sets that are rotated every ttl, so a key is kept
+ * for at least ttl and at most twice that. Keys claimed by a transaction that rolls back are released again,
+ * otherwise a retry of a failed write would be dropped. The unique index on hits is the backstop for
+ * retries that arrive after the key has been forgotten.
+ */
+@Component
+public class HitDeduplicator {
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final int maxKeys;
+    private final Counter duplicateCounter;
+    private volatile Set<String> current = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> previous = ConcurrentHashMap.newKeySet();
+    private volatile long rotatedAt = System.nanoTime();
+
+    public HitDeduplicator(MeterRegistry meterRegistry,
+                           @Value("${stats.ingest.dedup.enabled:true}") boolean enabled,
+                           @Value("${stats.ingest.dedup.ttl-ms:600000}") long ttlMs,
+                           @Value("${stats.ingest.dedup.max-keys:1000000}") int maxKeys) {
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.maxKeys = maxKeys;
+        this.duplicateCounter = meterRegistry.counter("stats.ingest.duplicates", "source", "memory");
+        meterRegistry.gauge("stats.ingest.dedup.keys", this, deduplicator -> deduplicator.size());
+    }
+
+    public List<Hit> claim(List<Hit> hits) {
+        if (!enabled) {
+            return hits;
+        }
+        rotateIfNeeded();
+        Set<String> generation = current;
+        List<Hit> accepted = new ArrayList<>(hits.size());
+        List<String> claimed = new ArrayList<>();
+        for (Hit hit : hits) {
+            String hitId = hit.getHitId();
+            if (hitId == null) {
+                accepted.add(hit);
+            } else if (!previous.contains(hitId) && generation.add(hitId)) {
+                accepted.add(hit);
+                claimed.add(hitId);
+            } else {
+                duplicateCounter.increment();
+            }
+        }
+        if (!claimed.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(generation, claimed);
+                    }
+                }
+            });
+        }
+        return accepted;
+    }
+
+    private void release(Set<String> generation, List<String> hitIds) {
+        generation.removeAll(hitIds);
+    }
+
+    public int size() {
+        return current.size() + previous.size();
+    }
+
+    private void rotateIfNeeded() {
+        long now = System.nanoTime();
+        if (now - rotatedAt < ttlNanos && current.size() < maxKeys / 2) {
+            return;
+        }
+        synchronized (this) {
+            if (now - rotatedAt < ttlNanos && current.size() < maxKeys / 2) {
+                return;
+            }
+            previous = now - rotatedAt < 2 * ttlNanos ? current : ConcurrentHashMap.newKeySet();
+            current = ConcurrentHashMap.newKeySet();
+            rotatedAt = now;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.ingest;
+
+import ru.practicum.Hit;
+
+import java.util.List;
+
+public interface HitListener {
+
+    void onHits(List<Hit> hits);
+
+    default boolean needsBackfill() {
+        return false;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.Hit;
+import ru.practicum.dictionary.AppDictionary;
+import ru.practicum.dictionary.UriDictionary;
+import ru.practicum.resource.ResourceRef;
+import ru.practicum.store.HitStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+
+    private final HitStore hitStore;
+    private final AppDictionary appDictionary;
+    private final UriDictionary uriDictionary;
+    private final HitDeduplicator hitDeduplicator;
+    private final List<HitListener> listeners;
+
+    /**
+     * Writes the hits and returns how many were stored; repeated hit ids are dropped
+     * and never reach the listeners.
+     */
+    @Transactional
+    public int write(List<Hit> hits) {
+        List<Hit> claimed = hitDeduplicator.claim(hits);
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        encode(claimed);
+        List<Hit> saved = hitStore.saveAll(claimed);
+        if (saved.isEmpty()) {
+            return 0;
+        }
+        for (HitListener listener : listeners) {
+            listener.onHits(saved);
+        }
+        return saved.size();
+    }
+
+    private void encode(List<Hit> hits) {
+        Map<String, Integer> appIds = appDictionary.idsOf(hits.stream()
+                .map(Hit::getApp)
+                .collect(Collectors.toSet()));
+        Map<String, Integer> uriIds = uriDictionary.idsOf(hits.stream()
+                .map(Hit::getUri)
+                .collect(Collectors.toSet()));
+        for (Hit hit : hits) {
+            hit.setAppId(appIds.get(hit.getApp()));
+            hit.setUriId(uriIds.get(hit.getUri()));
+            ResourceRef resource = ResourceRef.parse(hit.getUri());
+            if (resource != null) {
+                hit.setResourceType(resource.getType());
+                hit.setResourceId(resource.getId());
+            }
+        }
+    }
+}
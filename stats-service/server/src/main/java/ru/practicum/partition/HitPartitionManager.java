@@ -0,0 +1,191 @@
+package ru.practicum.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.cache.StatsResultCache;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps the hits partitions ahead of time and applies retention. Hits outside every partition land in
+ * hits_default; on each run they are moved into partitions created for them, so retention reaches them too.
+ */
+@Slf4j
+@Component
+public class HitPartitionManager implements ApplicationRunner {
+
+    private static final String PARTITION_PREFIX = "hits_p";
+    private static final String IS_PARTITIONED = "SELECT COUNT(*) FROM pg_partitioned_table pt " +
+            "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = 'hits'";
+    private static final String FIND_PARTITIONS = "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = 'hits' AND c.relname LIKE 'hits\\_p%'";
+    private static final String HIT_COLUMNS = "id, app_id, uri_id, resource_type, resource_id, ip, time_stamp, hit_id";
+    private static final String IN_RANGE = "time_stamp >= ? AND time_stamp < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StatsResultCache statsResultCache;
+    private final boolean enabled;
+    private final PartitionPeriod period;
+    private final int premake;
+    private final int retentionDays;
+    private final boolean archive;
+    private volatile boolean partitioned;
+
+    public HitPartitionManager(JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               StatsResultCache statsResultCache,
+                               @Value("${stats.partition.enabled:true}") boolean enabled,
+                               @Value("${stats.partition.period:day}") String period,
+                               @Value("${stats.partition.premake:7}") int premake,
+                               @Value("${stats.partition.retention-days:0}") int retentionDays,
+                               @Value("${stats.partition.retention-action:drop}") String retentionAction) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.statsResultCache = statsResultCache;
+        this.enabled = enabled;
+        this.period = PartitionPeriod.valueOf(period.toUpperCase());
+        this.premake = premake;
+        this.retentionDays = retentionDays;
+        this.archive = "archive".equalsIgnoreCase(retentionAction);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        Integer count = jdbcTemplate.queryForObject(IS_PARTITIONED, Integer.class);
+        if (count == null || count == 0) {
+            throw new IllegalStateException("Table hits is not range partitioned; " +
+                    "set stats.partition.enabled=false to run without partition management");
+        }
+        partitioned = true;
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats.partition.cron:0 5 0 * * *}")
+    public void maintain() {
+        if (!enabled || !partitioned) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate horizon = retentionDays > 0 ? today.minusDays(retentionDays) : null;
+        try {
+            if (horizon != null && !archive) {
+                expireDefaultRows(period.floor(horizon));
+            }
+            for (LocalDate start : findDefaultPeriods()) {
+                createPartition(start);
+            }
+            createPartitions(today);
+            if (horizon != null) {
+                expirePartitions(horizon);
+            }
+        } catch (DataAccessException e) {
+            log.error("Partition maintenance failed: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private void createPartitions(LocalDate today) {
+        LocalDate start = period.floor(today);
+        for (int i = 0; i <= premake; i++) {
+            createPartition(start);
+            start = period.next(start);
+        }
+    }
+
+    /**
+     * Creates the partition for the period starting at start. Rows of that period already sitting in
+     * hits_default would make a plain CREATE ... PARTITION OF fail, so they are moved into the new table
+     * before it is attached, all in one transaction.
+     */
+    private void createPartition(LocalDate start) {
+        LocalDate end = period.next(start);
+        String name = PARTITION_PREFIX + period.suffix(start);
+        Timestamp from = Timestamp.valueOf(start.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(end.atStartOfDay());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL",
+                        Boolean.class, name))) {
+                    return;
+                }
+                String bounds = String.format("FOR VALUES FROM ('%s') TO ('%s')", start, end);
+                if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                        "SELECT EXISTS (SELECT 1 FROM hits_default WHERE " + IN_RANGE + ")", Boolean.class, from, to))) {
+                    jdbcTemplate.execute(String.format("CREATE TABLE %s PARTITION OF hits %s", name, bounds));
+                    return;
+                }
+                jdbcTemplate.execute(String.format("CREATE TABLE %s (LIKE hits INCLUDING DEFAULTS)", name));
+                int moved = jdbcTemplate.update(String.format("INSERT INTO %s (%s) SELECT %2$s FROM hits_default " +
+                        "WHERE %s", name, HIT_COLUMNS, IN_RANGE), from, to);
+                jdbcTemplate.update("DELETE FROM hits_default WHERE " + IN_RANGE, from, to);
+                jdbcTemplate.execute(String.format("ALTER TABLE hits ATTACH PARTITION %s %s", name, bounds));
+                log.info("Moved {} hits from the default partition into new partition {}", moved, name);
+            });
+        } catch (DataAccessException e) {
+            log.error("Failed to create partition {}: {}", name, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private Set<LocalDate> findDefaultPeriods() {
+        Set<LocalDate> starts = new TreeSet<>();
+        for (Date day : jdbcTemplate.queryForList("SELECT DISTINCT CAST(time_stamp AS DATE) FROM hits_default",
+                Date.class)) {
+            starts.add(period.floor(day.toLocalDate()));
+        }
+        return starts;
+    }
+
+    private void expireDefaultRows(LocalDate cutoff) {
+        int deleted = jdbcTemplate.update("DELETE FROM hits_default WHERE time_stamp < ?",
+                Timestamp.valueOf(cutoff.atStartOfDay()));
+        if (deleted > 0) {
+            statsResultCache.invalidate(LocalDateTime.MIN, cutoff.atStartOfDay());
+            log.info("Deleted {} expired hits from the default partition", deleted);
+        }
+    }
+
+    private void expirePartitions(LocalDate horizon) {
+        List<String> partitions = jdbcTemplate.queryForList(FIND_PARTITIONS, String.class);
+        for (String name : partitions) {
+            LocalDate start;
+            try {
+                start = period.parseSuffix(name.substring(PARTITION_PREFIX.length()));
+            } catch (DateTimeParseException e) {
+                log.warn("Skipping partition {} with unexpected name", name);
+                continue;
+            }
+            if (period.next(start).isAfter(horizon)) {
+                continue;
+            }
+            if (archive) {
+                jdbcTemplate.execute(String.format("ALTER TABLE hits DETACH PARTITION %s", name));
+                jdbcTemplate.execute(String.format("ALTER TABLE %s RENAME TO hits_archive_%s",
+                        name, name.substring(PARTITION_PREFIX.length())));
+                log.info("Partition {} detached to archive", name);
+            } else {
+                jdbcTemplate.execute(String.format("DROP TABLE %s", name));
+                log.info("Partition {} dropped", name);
+            }
+            statsResultCache.invalidate(start.atStartOfDay(), period.next(start).atStartOfDay());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.partition;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+public enum PartitionPeriod {
+    DAY(ChronoUnit.DAYS, "yyyyMMdd"),
+    MONTH(ChronoUnit.MONTHS, "yyyyMM");
+
+    private final ChronoUnit unit;
+    private final DateTimeFormatter suffixFormatter;
+
+    PartitionPeriod(ChronoUnit unit, String suffixPattern) {
+        this.unit = unit;
+        this.suffixFormatter = DateTimeFormatter.ofPattern(suffixPattern);
+    }
+
+    public LocalDate floor(LocalDate date) {
+        return this == MONTH ? date.withDayOfMonth(1) : date;
+    }
+
+    public LocalDate next(LocalDate start) {
+        return start.plus(1, unit);
+    }
+
+    public String suffix(LocalDate start) {
+        return start.format(suffixFormatter);
+    }
+
+    public LocalDate parseSuffix(String suffix) {
+        return this == MONTH
+                ? LocalDate.parse(suffix + "01", DateTimeFormatter.BASIC_ISO_DATE)
+                : LocalDate.parse(suffix, suffixFormatter);
+    }
+}
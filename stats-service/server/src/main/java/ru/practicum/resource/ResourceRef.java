@@ -0,0 +1,44 @@
+package ru.practicum.resource;
+
+import lombok.Value;
+
+@Value
+public class ResourceRef {
+
+    private static final int MAX_TYPE_LENGTH = 50;
+    private static final int MAX_ID_LENGTH = 18;
+
+    String type;
+
+    Long id;
+
+    public static ResourceRef parse(String uri) {
+        int end = uri.length();
+        int query = uri.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        if (end > 1 && uri.charAt(end - 1) == '/') {
+            end--;
+        }
+        if (end == 0 || uri.charAt(0) != '/') {
+            return null;
+        }
+        int slash = uri.indexOf('/', 1);
+        if (slash < 0 || slash == 1 || slash - 1 > MAX_TYPE_LENGTH || slash == end - 1 || end - slash - 1 > MAX_ID_LENGTH) {
+            return null;
+        }
+        for (int i = 1; i < slash; i++) {
+            char c = uri.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_') {
+                return null;
+            }
+        }
+        for (int i = slash + 1; i < end; i++) {
+            if (!Character.isDigit(uri.charAt(i))) {
+                return null;
+            }
+        }
+        return new ResourceRef(uri.substring(1, slash), Long.parseLong(uri.substring(slash + 1, end)));
+    }
+}
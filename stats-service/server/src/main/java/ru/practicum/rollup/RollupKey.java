@@ -0,0 +1,20 @@
+package ru.practicum.rollup;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+@Value
+public class RollupKey {
+
+    public static final Comparator<RollupKey> LOCK_ORDER = Comparator.comparing(RollupKey::getUriId)
+            .thenComparing(RollupKey::getBucket)
+            .thenComparing(RollupKey::getAppId);
+
+    Integer appId;
+
+    Integer uriId;
+
+    LocalDateTime bucket;
+}
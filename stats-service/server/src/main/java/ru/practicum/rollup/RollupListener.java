@@ -0,0 +1,34 @@
+package ru.practicum.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.Hit;
+import ru.practicum.ingest.HitListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+@RequiredArgsConstructor
+public class RollupListener implements HitListener {
+
+    private final RollupRepository rollupRepository;
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            Map<RollupKey, Long> counts = new TreeMap<>(RollupKey.LOCK_ORDER);
+            for (Hit hit : hits) {
+                RollupKey key = new RollupKey(hit.getAppId(), hit.getUriId(), granularity.floor(hit.getTimestamp()));
+                counts.merge(key, 1L, Long::sum);
+            }
+            rollupRepository.increment(granularity, counts);
+        }
+    }
+
+    @Override
+    public boolean needsBackfill() {
+        return rollupRepository.isEmpty(RollupGranularity.MINUTE);
+    }
+}
@@ -0,0 +1,67 @@
+package ru.practicum.rollup;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.practicum.rollup.RollupGranularity.HOUR;
+import static ru.practicum.rollup.RollupGranularity.MINUTE;
+
+/**
+ * A slice of a stats range answered from one source: a rollup table, or raw hits when granularity is null.
+ * Rollup slices and the raw head are half-open, the raw tail includes its end unless asked otherwise.
+ */
+@Value
+public class RollupPiece {
+
+    RollupGranularity granularity;
+
+    LocalDateTime from;
+
+    LocalDateTime to;
+
+    boolean endInclusive;
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+
+    public static List<RollupPiece> split(LocalDateTime start, LocalDateTime end) {
+        return split(start, end, true);
+    }
+
+    public static List<RollupPiece> split(LocalDateTime start, LocalDateTime end, boolean endInclusive) {
+        List<RollupPiece> pieces = new ArrayList<>();
+        LocalDateTime minuteStart = MINUTE.ceil(start);
+        LocalDateTime minuteEnd = MINUTE.floor(end);
+        if (!minuteStart.isBefore(minuteEnd)) {
+            pieces.add(new RollupPiece(null, start, end, endInclusive));
+            return pieces;
+        }
+        if (start.isBefore(minuteStart)) {
+            pieces.add(new RollupPiece(null, start, minuteStart, false));
+        }
+        LocalDateTime hourStart = HOUR.ceil(minuteStart);
+        LocalDateTime hourEnd = HOUR.floor(minuteEnd);
+        if (hourStart.isBefore(hourEnd)) {
+            addRollup(pieces, MINUTE, minuteStart, hourStart);
+            addRollup(pieces, HOUR, hourStart, hourEnd);
+            addRollup(pieces, MINUTE, hourEnd, minuteEnd);
+        } else {
+            addRollup(pieces, MINUTE, minuteStart, minuteEnd);
+        }
+        if (endInclusive || minuteEnd.isBefore(end)) {
+            pieces.add(new RollupPiece(null, minuteEnd, end, endInclusive));
+        }
+        return pieces;
+    }
+
+    private static void addRollup(List<RollupPiece> pieces, RollupGranularity granularity,
+                                  LocalDateTime from, LocalDateTime to) {
+        if (from.isBefore(to)) {
+            pieces.add(new RollupPiece(granularity, from, to, false));
+        }
+    }
+}
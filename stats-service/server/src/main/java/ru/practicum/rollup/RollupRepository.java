@@ -0,0 +1,95 @@
+package ru.practicum.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.StatsRow;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class RollupRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void increment(RollupGranularity granularity, Map<RollupKey, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO " + granularity.getTable() + " (app_id, uri_id, bucket, hits) " +
+                "VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (uri_id, bucket, app_id) DO UPDATE SET hits = " + granularity.getTable() + ".hits + EXCLUDED.hits";
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, hits) -> rows.add(new Object[]{key.getAppId(), key.getUriId(), Timestamp.valueOf(key.getBucket()), hits}));
+        jdbcTemplate.getJdbcTemplate().batchUpdate(sql, rows);
+    }
+
+    public List<StatsRow> findStats(RollupGranularity granularity, LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        StringBuilder sql = new StringBuilder("SELECT app_id, uri_id, SUM(hits) AS hits FROM ")
+                .append(granularity.getTable())
+                .append(" WHERE bucket >= :from AND bucket < :to");
+        if (uriIds != null && !uriIds.isEmpty()) {
+            sql.append(" AND uri_id IN (:uriIds)");
+            params.addValue("uriIds", uriIds);
+        }
+        sql.append(" GROUP BY app_id, uri_id");
+        return jdbcTemplate.query(sql.toString(), params,
+                (rs, rowNum) -> new StatsRow(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits")));
+    }
+
+    /**
+     * Sums the rollup pieces per group and returns the limit largest groups in {@link ru.practicum.TopStats}
+     * order, so the groups outside the top never leave the database. A null uriIds means all uris.
+     */
+    public List<StatsRow> findTop(List<RollupPiece> pieces, Collection<Integer> uriIds, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("limit", limit);
+        String sql = sumPieces(pieces, uriIds, params) + " ORDER BY hits DESC, uri_id, app_id LIMIT :limit";
+        return jdbcTemplate.query(sql, params,
+                (rs, rowNum) -> new StatsRow(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits")));
+    }
+
+    public List<StatsRow> findStats(List<RollupPiece> pieces, Collection<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return jdbcTemplate.query(sumPieces(pieces, uriIds, params), params,
+                (rs, rowNum) -> new StatsRow(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits")));
+    }
+
+    private String sumPieces(List<RollupPiece> pieces, Collection<Integer> uriIds, MapSqlParameterSource params) {
+        StringBuilder sql = new StringBuilder("SELECT app_id, uri_id, SUM(hits) AS hits FROM (");
+        for (int i = 0; i < pieces.size(); i++) {
+            RollupPiece piece = pieces.get(i);
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT app_id, uri_id, hits FROM ")
+                    .append(piece.getGranularity().getTable())
+                    .append(" WHERE bucket >= :from").append(i)
+                    .append(" AND bucket < :to").append(i);
+            params.addValue("from" + i, Timestamp.valueOf(piece.getFrom()))
+                    .addValue("to" + i, Timestamp.valueOf(piece.getTo()));
+            if (uriIds != null) {
+                sql.append(" AND uri_id = ANY(:uriIds)");
+            }
+        }
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return sql.append(") r GROUP BY app_id, uri_id").toString();
+    }
+
+    public boolean isEmpty(RollupGranularity granularity) {
+        List<Integer> rows = jdbcTemplate.getJdbcTemplate()
+                .queryForList("SELECT 1 FROM " + granularity.getTable() + " LIMIT 1", Integer.class);
+        return rows.isEmpty();
+    }
+}
@@ -0,0 +1,132 @@
+package ru.practicum.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsKey;
+import ru.practicum.StatsRow;
+import ru.practicum.TopStats;
+import ru.practicum.aggregate.LongCountMap;
+import ru.practicum.cache.StatsSource;
+import ru.practicum.hotwindow.HotWindow;
+import ru.practicum.store.HitStore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+@RequiredArgsConstructor
+public class RollupStatsReader implements StatsSource<Long> {
+
+    private final RollupRepository rollupRepository;
+    private final HitStore hitStore;
+    private final HotWindow hotWindow;
+
+    @Override
+    public String getName() {
+        return "rollup";
+    }
+
+    @Override
+    public Map<StatsKey, Long> find(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        LocalDateTime windowStart = hotWindow.getStart();
+        if (windowStart != null && !end.isBefore(windowStart)) {
+            boolean windowOnly = !start.isBefore(windowStart);
+            Map<StatsKey, Long> recent = hotWindow.count(windowOnly ? start : windowStart, end, endInclusive, uriIds);
+            // null if the window moved on since its start was read
+            if (recent != null) {
+                if (windowOnly) {
+                    return recent;
+                }
+                Map<StatsKey, Long> totals = findPersisted(start, windowStart, false, uriIds);
+                recent.forEach((key, hits) -> totals.merge(key, hits, Long::sum));
+                return totals;
+            }
+        }
+        return findPersisted(start, end, endInclusive, uriIds);
+    }
+
+    /**
+     * The limit largest groups of {@link #find}, restricted to uriFilter when it is not null, without building
+     * a map of every group. The rollup tables are ranked in the database. Only groups that also appear in the
+     * raw edges or the hot window are looked up in the rollups and merged on top of that ranking. A group left
+     * out of both cannot outrank the rollup top, because its total is its rollup count.
+     */
+    public Map<StatsKey, Long> findTop(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                       Set<Integer> uriFilter, int limit) {
+        Map<StatsKey, Long> edges = new HashMap<>();
+        List<RollupPiece> rollups = new ArrayList<>();
+        LocalDateTime windowStart = hotWindow.getStart();
+        Map<StatsKey, Long> recent = windowStart == null || end.isBefore(windowStart)
+                ? null
+                : hotWindow.count(start.isBefore(windowStart) ? windowStart : start, end, true, uriIds);
+        if (recent == null) {
+            collect(RollupPiece.split(start, end, true), uriIds, rollups, edges);
+        } else {
+            if (start.isBefore(windowStart)) {
+                collect(RollupPiece.split(start, windowStart, false), uriIds, rollups, edges);
+            }
+            recent.forEach((key, hits) -> edges.merge(key, hits, Long::sum));
+        }
+        if (uriFilter != null) {
+            edges.keySet().removeIf(key -> !uriFilter.contains(key.getUriId()));
+        }
+        Map<StatsKey, Long> candidates = new HashMap<>();
+        if (!rollups.isEmpty()) {
+            StatsRow.addAll(candidates, rollupRepository.findTop(rollups, uriFilter != null ? uriFilter : uriIds, limit));
+            Set<Integer> missing = new HashSet<>();
+            edges.keySet().stream()
+                    .filter(key -> !candidates.containsKey(key))
+                    .forEach(key -> missing.add(key.getUriId()));
+            if (!missing.isEmpty()) {
+                for (StatsRow row : rollupRepository.findStats(rollups, missing)) {
+                    if (edges.containsKey(row.getKey()) && !candidates.containsKey(row.getKey())) {
+                        candidates.put(row.getKey(), row.getHits());
+                    }
+                }
+            }
+        }
+        edges.forEach((key, hits) -> candidates.merge(key, hits, Long::sum));
+        return TopStats.select(candidates, limit, null);
+    }
+
+    private void collect(List<RollupPiece> pieces, List<Integer> uriIds, List<RollupPiece> rollups,
+                         Map<StatsKey, Long> edges) {
+        for (RollupPiece piece : pieces) {
+            if (piece.isRaw()) {
+                StatsRow.addAll(edges, hitStore.findStats(piece.getFrom(), piece.getTo(), piece.isEndInclusive(), uriIds));
+            } else {
+                rollups.add(piece);
+            }
+        }
+    }
+
+    /**
+     * Sums the pieces one after another on the calling thread, inside the request's transaction, so a query
+     * never holds more than one connection.
+     */
+    private Map<StatsKey, Long> findPersisted(LocalDateTime start, LocalDateTime end, boolean endInclusive,
+                                              List<Integer> uriIds) {
+        LongCountMap counts = new LongCountMap();
+        for (RollupPiece piece : RollupPiece.split(start, end, endInclusive)) {
+            counts = counts.merge(LongCountMap.of(piece.isRaw()
+                    ? hitStore.findStats(piece.getFrom(), piece.getTo(), piece.isEndInclusive(), uriIds)
+                    : rollupRepository.findStats(piece.getGranularity(), piece.getFrom(), piece.getTo(), uriIds)));
+        }
+        return counts.toStats();
+    }
+
+    @Override
+    public Long merge(Long left, Long right) {
+        return left + right;
+    }
+
+    @Override
+    public long count(Long value) {
+        return value;
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.sketch;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.Hit;
+import ru.practicum.ingest.HitListener;
+import ru.practicum.rollup.RollupKey;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static ru.practicum.rollup.RollupGranularity.HOUR;
+
+@Component
+@RequiredArgsConstructor
+public class SketchListener implements HitListener {
+
+    private final SketchRepository sketchRepository;
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        Map<RollupKey, HyperLogLog> sketches = new TreeMap<>(RollupKey.LOCK_ORDER);
+        for (Hit hit : hits) {
+            RollupKey key = new RollupKey(hit.getAppId(), hit.getUriId(), HOUR.floor(hit.getTimestamp()));
+            sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(hit.getIp());
+        }
+        sketchRepository.merge(sketches);
+    }
+
+    @Override
+    public boolean needsBackfill() {
+        return sketchRepository.isEmpty();
+    }
+}
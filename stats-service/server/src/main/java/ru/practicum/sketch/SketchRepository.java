@@ -0,0 +1,79 @@
+package ru.practicum.sketch;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.StatsKey;
+import ru.practicum.rollup.RollupKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class SketchRepository {
+
+    private static final String INSERT_EMPTY = "INSERT INTO hits_sketch_hour (app_id, uri_id, bucket, sketch) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (uri_id, bucket, app_id) DO NOTHING";
+    private static final String LOCK = "SELECT app_id, uri_id, bucket, sketch FROM hits_sketch_hour " +
+            "WHERE (uri_id, bucket, app_id) IN (:keys) ORDER BY uri_id, bucket, app_id FOR UPDATE";
+    private static final String UPDATE = "UPDATE hits_sketch_hour SET sketch = ? WHERE uri_id = ? AND bucket = ? AND app_id = ?";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void merge(Map<RollupKey, HyperLogLog> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        byte[] empty = new HyperLogLog().toBytes();
+        List<Object[]> inserts = new ArrayList<>(sketches.size());
+        List<Object[]> keys = new ArrayList<>(sketches.size());
+        for (RollupKey key : sketches.keySet()) {
+            Timestamp bucket = Timestamp.valueOf(key.getBucket());
+            inserts.add(new Object[]{key.getAppId(), key.getUriId(), bucket, empty});
+            keys.add(new Object[]{key.getUriId(), bucket, key.getAppId()});
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_EMPTY, inserts);
+        List<Object[]> updates = new ArrayList<>(sketches.size());
+        jdbcTemplate.query(LOCK, new MapSqlParameterSource("keys", keys), rs -> {
+            RollupKey key = new RollupKey(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    rs.getTimestamp("bucket").toLocalDateTime());
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+            sketch.merge(sketches.get(key));
+            updates.add(new Object[]{sketch.toBytes(), key.getUriId(), Timestamp.valueOf(key.getBucket()), key.getAppId()});
+        });
+        jdbcTemplate.getJdbcTemplate().batchUpdate(UPDATE, updates);
+    }
+
+    public Map<StatsKey, HyperLogLog> findSketches(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        StringBuilder sql = new StringBuilder("SELECT app_id, uri_id, sketch FROM hits_sketch_hour " +
+                "WHERE bucket >= :from AND bucket < :to");
+        if (uriIds != null && !uriIds.isEmpty()) {
+            sql.append(" AND uri_id IN (:uriIds)");
+            params.addValue("uriIds", uriIds);
+        }
+        Map<StatsKey, HyperLogLog> result = new HashMap<>();
+        jdbcTemplate.query(sql.toString(), params, rs -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+            result.merge(new StatsKey(rs.getInt("app_id"), rs.getInt("uri_id")), sketch, (existing, added) -> {
+                existing.merge(added);
+                return existing;
+            });
+        });
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.getJdbcTemplate()
+                .queryForList("SELECT 1 FROM hits_sketch_hour LIMIT 1", Integer.class)
+                .isEmpty();
+    }
+}
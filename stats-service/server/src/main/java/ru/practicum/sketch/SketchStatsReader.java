@@ -0,0 +1,73 @@
+package ru.practicum.sketch;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.RangeSplit;
+import ru.practicum.StatsKey;
+import ru.practicum.Visitor;
+import ru.practicum.cache.StatsSource;
+import ru.practicum.store.HitStore;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class SketchStatsReader implements StatsSource<HyperLogLog> {
+
+    private final SketchRepository sketchRepository;
+    private final HitStore hitStore;
+
+    public long countVisitors(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        HyperLogLog union = new HyperLogLog();
+        find(start, end, true, uriIds).values().forEach(union::merge);
+        return union.estimate();
+    }
+
+    @Override
+    public String getName() {
+        return "sketch";
+    }
+
+    @Override
+    public Map<StatsKey, HyperLogLog> find(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        RangeSplit split = RangeSplit.of(start, end, ChronoUnit.HOURS);
+        if (!split.hasBuckets()) {
+            Map<StatsKey, HyperLogLog> sketches = new HashMap<>();
+            addVisitors(sketches, hitStore.findVisitors(start, end, endInclusive, uriIds));
+            return sketches;
+        }
+        Map<StatsKey, HyperLogLog> sketches = sketchRepository.findSketches(split.getBucketStart(), split.getBucketEnd(), uriIds);
+        if (split.hasHead()) {
+            addVisitors(sketches, hitStore.findVisitors(start, split.getBucketStart(), false, uriIds));
+        }
+        if (endInclusive) {
+            addVisitors(sketches, hitStore.findVisitors(split.getBucketEnd(), end, true, uriIds));
+        } else if (split.getBucketEnd().isBefore(end)) {
+            addVisitors(sketches, hitStore.findVisitors(split.getBucketEnd(), end, false, uriIds));
+        }
+        return sketches;
+    }
+
+    @Override
+    public HyperLogLog merge(HyperLogLog left, HyperLogLog right) {
+        HyperLogLog merged = left.copy();
+        merged.merge(right);
+        return merged;
+    }
+
+    @Override
+    public long count(HyperLogLog value) {
+        return value.estimate();
+    }
+
+    private static void addVisitors(Map<StatsKey, HyperLogLog> sketches, List<Visitor> visitors) {
+        for (Visitor visitor : visitors) {
+            sketches.computeIfAbsent(visitor.getKey(), key -> new HyperLogLog())
+                    .add(visitor.getIp());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Growable in-memory columns of one day of hits, in arrival order: the staging area of a day being sealed and
+ * the late hits of a sealed day. Thread-safe, late hits are added while readers scan them.
+ */
+class DayColumns {
+
+    private final long dayStart;
+    private int[] seconds = new int[1024];
+    private int[] appIds = new int[1024];
+    private int[] uriIds = new int[1024];
+    private int[] ipIndexes = new int[1024];
+    private final Map<String, Integer> ips = new HashMap<>();
+    private final List<String> ipTable = new ArrayList<>();
+    private int size;
+
+    DayColumns(long dayStart) {
+        this.dayStart = dayStart;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized void add(long second, int appId, int uriId, String ip) {
+        if (size == seconds.length) {
+            int capacity = size * 2;
+            seconds = Arrays.copyOf(seconds, capacity);
+            appIds = Arrays.copyOf(appIds, capacity);
+            uriIds = Arrays.copyOf(uriIds, capacity);
+            ipIndexes = Arrays.copyOf(ipIndexes, capacity);
+        }
+        seconds[size] = (int) (second - dayStart);
+        appIds[size] = appId;
+        uriIds[size] = uriId;
+        ipIndexes[size] = ips.computeIfAbsent(ip, key -> {
+            ipTable.add(key);
+            return ipTable.size() - 1;
+        });
+        size++;
+    }
+
+    /**
+     * Adds rows [from, to) of another day's columns.
+     */
+    void addAll(DayColumns other, int from, int to) {
+        other.scanRows(from, to, Long.MIN_VALUE, Long.MAX_VALUE, null, true, (appId, uriId, second, ip) ->
+                add(second, appId, uriId, ip));
+    }
+
+    /**
+     * Same contract as {@link DaySegment#scan}, in arrival order.
+     */
+    void scan(long fromSecond, long toSecond, Set<Integer> uriIds, boolean withIps, LogSegment.RecordCallback callback) {
+        scanRows(0, Integer.MAX_VALUE, fromSecond, toSecond, uriIds, withIps, callback);
+    }
+
+    synchronized void write(Path path) throws IOException {
+        // seconds fit in 17 bits, so row numbers can ride along in the low half of one sort key
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = (long) seconds[i] << 32 | i;
+        }
+        Arrays.sort(order);
+        int[] sortedSeconds = new int[size];
+        int[] sortedApps = new int[size];
+        int[] sortedUris = new int[size];
+        int[] sortedIps = new int[size];
+        for (int i = 0; i < size; i++) {
+            int row = (int) order[i];
+            sortedSeconds[i] = seconds[row];
+            sortedApps[i] = appIds[row];
+            sortedUris[i] = uriIds[row];
+            sortedIps[i] = ipIndexes[row];
+        }
+        DaySegment.write(path, dayStart, size, sortedSeconds, sortedApps, sortedUris, sortedIps,
+                ipTable.toArray(new String[0]));
+    }
+
+    private synchronized void scanRows(int from, int to, long fromSecond, long toSecond, Set<Integer> uriFilter,
+                                       boolean withIps, LogSegment.RecordCallback callback) {
+        for (int i = from; i < Math.min(to, size); i++) {
+            long second = dayStart + seconds[i];
+            if (second >= fromSecond && second < toSecond && (uriFilter == null || uriFilter.contains(uriIds[i]))) {
+                callback.accept(appIds[i], uriIds[i], second, withIps ? ipTable.get(ipIndexes[i]) : null);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package ru.practicum.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * An immutable columnar file with one day of hits, sorted by time. Layout after the header:
+ *
+ * <pre>
+ * long[bloomWords] uri bloom filter
+ * int[rows] seconds since day start | int[rows] app ids | int[rows] uri ids | int[rows] ip indexes,
+ *     each column padded to a multiple of 8 bytes
+ * ip table: byte length + ascii bytes per distinct ip
+ * </pre>
+ *
+ * Min/max uri ids and the bloom filter let a uri-filtered query skip the whole file; otherwise the time range
+ * is located by binary search over the seconds column and the slice is read in place from the mapping. Files
+ * are mapped in 1GB chunks with long offsets, so a day may grow past 2GB; every column starts 8 byte aligned
+ * and chunks are a multiple of 8 bytes, so no value straddles two chunks.
+ */
+class DaySegment {
+
+    static final int MAGIC = 0x44534547;
+    static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 4 + 4 + 4;
+    private static final int BITS_PER_URI = 10;
+    private static final int HASHES = 7;
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final long dayStart;
+    private final int rows;
+    private final int minUri;
+    private final int maxUri;
+    private final int bloomWords;
+    private final ByteBuffer[] chunks;
+    private final long secondsOffset;
+    private final long appsOffset;
+    private final long urisOffset;
+    private final long ipsOffset;
+    private final long ipTableOffset;
+    private final int ipCount;
+    private volatile String[] ipTable;
+
+    private DaySegment(ByteBuffer[] chunks) {
+        this.chunks = chunks;
+        this.dayStart = getLong(8);
+        this.rows = getInt(16);
+        this.minUri = getInt(20);
+        this.maxUri = getInt(24);
+        this.bloomWords = getInt(28);
+        this.ipCount = getInt(36);
+        this.secondsOffset = align(HEADER_SIZE + bloomWords * 8L);
+        this.appsOffset = align(secondsOffset + rows * 4L);
+        this.urisOffset = align(appsOffset + rows * 4L);
+        this.ipsOffset = align(urisOffset + rows * 4L);
+        this.ipTableOffset = align(ipsOffset + rows * 4L);
+    }
+
+    static DaySegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long position = (long) i << CHUNK_BITS;
+                long length = Math.min(CHUNK_MASK + 1, size - position);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            }
+            if (chunks.length == 0 || chunks[0].capacity() < HEADER_SIZE
+                    || chunks[0].getInt(0) != MAGIC || chunks[0].getInt(4) != VERSION) {
+                throw new IOException("Not a day segment: " + path);
+            }
+            return new DaySegment(chunks);
+        }
+    }
+
+    /**
+     * Writes the columns, which must already be sorted by seconds, to a temporary file and moves it into place,
+     * so a segment file either exists complete or not at all.
+     */
+    static void write(Path path, long dayStart, int rows, int[] seconds, int[] appIds, int[] uriIds, int[] ipIndexes,
+                      String[] ips) throws IOException {
+        int minUri = Integer.MAX_VALUE;
+        int maxUri = Integer.MIN_VALUE;
+        for (int i = 0; i < rows; i++) {
+            minUri = Math.min(minUri, uriIds[i]);
+            maxUri = Math.max(maxUri, uriIds[i]);
+        }
+        int[] distinctUris = Arrays.stream(uriIds, 0, rows).distinct().toArray();
+        int bloomWords = Math.max(1, (distinctUris.length * BITS_PER_URI + 63) / 64);
+        long[] bloom = new long[bloomWords];
+        for (int uriId : distinctUris) {
+            long bits = bloomWords * 64L;
+            long h1 = mix(uriId);
+            long h2 = mix(h1) | 1;
+            for (int k = 0; k < HASHES; k++) {
+                int bit = (int) Math.floorMod(h1 + k * h2, bits);
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dayStart);
+            out.writeInt(rows);
+            out.writeInt(minUri);
+            out.writeInt(maxUri);
+            out.writeInt(bloomWords);
+            out.writeInt(HASHES);
+            out.writeInt(ips.length);
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+            writeColumn(out, seconds, rows);
+            writeColumn(out, appIds, rows);
+            writeColumn(out, uriIds, rows);
+            writeColumn(out, ipIndexes, rows);
+            for (String ip : ips) {
+                byte[] bytes = ip.getBytes(StandardCharsets.US_ASCII);
+                out.writeByte(bytes.length);
+                out.write(bytes);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    long getDayStart() {
+        return dayStart;
+    }
+
+    /**
+     * False if no row can have one of the uris; null means all uris.
+     */
+    boolean mayContain(Set<Integer> uriIds) {
+        if (uriIds == null) {
+            return rows > 0;
+        }
+        long bits = bloomWords * 64L;
+        for (int uriId : uriIds) {
+            if (uriId < minUri || uriId > maxUri) {
+                continue;
+            }
+            long h1 = mix(uriId);
+            long h2 = mix(h1) | 1;
+            boolean present = true;
+            for (int k = 0; k < HASHES && present; k++) {
+                int bit = (int) Math.floorMod(h1 + k * h2, bits);
+                present = (getLong(HEADER_SIZE + (bit >>> 6) * 8L) & 1L << bit) != 0;
+            }
+            if (present) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calls back for every row with fromSecond <= second < toSecond (epoch seconds) whose uri passes the filter.
+     * The ip is only decoded when asked for, otherwise it is passed as null.
+     */
+    void scan(long fromSecond, long toSecond, Set<Integer> uriIds, boolean withIps, LogSegment.RecordCallback callback) {
+        if (!mayContain(uriIds)) {
+            return;
+        }
+        String[] ips = withIps ? ipTable() : null;
+        int from = lowerBound(Math.max(fromSecond - dayStart, Integer.MIN_VALUE));
+        int to = lowerBound(Math.min(toSecond - dayStart, Integer.MAX_VALUE));
+        for (int i = from; i < to; i++) {
+            int uriId = getInt(urisOffset + i * 4L);
+            if (uriIds == null || uriIds.contains(uriId)) {
+                callback.accept(getInt(appsOffset + i * 4L), uriId, dayStart + getInt(secondsOffset + i * 4L),
+                        ips == null ? null : ips[getInt(ipsOffset + i * 4L)]);
+            }
+        }
+    }
+
+    private int lowerBound(long offset) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getInt(secondsOffset + middle * 4L) < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private String[] ipTable() {
+        String[] table = ipTable;
+        if (table == null) {
+            table = new String[ipCount];
+            long offset = ipTableOffset;
+            for (int i = 0; i < ipCount; i++) {
+                int length = getByte(offset);
+                byte[] bytes = new byte[length];
+                for (int j = 0; j < length; j++) {
+                    bytes[j] = getByte(offset + 1 + j);
+                }
+                table[i] = new String(bytes, StandardCharsets.US_ASCII);
+                offset += 1 + length;
+            }
+            ipTable = table;
+        }
+        return table;
+    }
+
+    private byte getByte(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].get((int) (offset & CHUNK_MASK));
+    }
+
+    private int getInt(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    private long getLong(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    private static void writeColumn(DataOutputStream out, int[] values, int rows) throws IOException {
+        for (int i = 0; i < rows; i++) {
+            out.writeInt(values[i]);
+        }
+        if (rows % 2 != 0) {
+            // keeps the next column 8 byte aligned
+            out.writeInt(0);
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
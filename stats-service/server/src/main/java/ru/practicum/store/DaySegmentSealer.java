@@ -0,0 +1,239 @@
+package ru.practicum.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.Hit;
+import ru.practicum.cache.StatsResultCache;
+import ru.practicum.ingest.HitListener;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Seals finished days of raw hits into immutable {@link DaySegment} files and keeps the sealed ones mapped.
+ * A day is sealed once it is seal-after-days old, so most late hits have had time to arrive. Hits written for
+ * a day after it was sealed are kept in memory next to its segment and read along with it, and the reseal job
+ * folds them into a new segment. Late hits that were not resealed yet are lost from raw reads of the day by a
+ * restart; the engine and the rollups still have them.
+ */
+@Slf4j
+@Component
+public class DaySegmentSealer implements HitListener {
+
+    private static final String SUFFIX = ".col";
+
+    private final HitStore engine;
+    private final StatsResultCache statsResultCache;
+    private final boolean enabled;
+    private final Path directory;
+    private final int sealAfterDays;
+    private final int lookbackDays;
+    private final Counter sealedCounter;
+    private final Counter resealedCounter;
+    private final Counter lateCounter;
+    private final ConcurrentMap<LocalDate, SealedDay> sealed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<LocalDate, DayColumns> sealing = new ConcurrentHashMap<>();
+    private final Object lateLock = new Object();
+
+    public DaySegmentSealer(@Qualifier(HitStore.ENGINE) HitStore engine,
+                            StatsResultCache statsResultCache,
+                            MeterRegistry meterRegistry,
+                            @Value("${stats.segments.enabled:false}") boolean enabled,
+                            @Value("${stats.segments.directory:data/segments}") String directory,
+                            @Value("${stats.segments.seal-after-days:2}") int sealAfterDays,
+                            @Value("${stats.segments.lookback-days:30}") int lookbackDays) {
+        this.engine = engine;
+        this.statsResultCache = statsResultCache;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.sealAfterDays = sealAfterDays;
+        this.lookbackDays = lookbackDays;
+        this.sealedCounter = meterRegistry.counter("stats.segments.sealed");
+        this.resealedCounter = meterRegistry.counter("stats.segments.resealed");
+        this.lateCounter = meterRegistry.counter("stats.segments.late.hits");
+        meterRegistry.gauge("stats.segments.count", sealed, Map::size);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            try {
+                DaySegment segment = DaySegment.open(file);
+                LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(segment.getDayStart(), 86400));
+                sealed.put(day, new SealedDay(segment, new DayColumns(segment.getDayStart())));
+            } catch (IOException e) {
+                log.warn("Skipping unreadable day segment {}: {}", file, e.getMessage());
+            }
+        }
+        log.info("Opened {} day segments in {}", sealed.size(), directory.toAbsolutePath());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSealed(LocalDate day) {
+        return find(day) != null;
+    }
+
+    SealedDay find(LocalDate day) {
+        return enabled ? sealed.get(day) : null;
+    }
+
+    @Scheduled(cron = "${stats.segments.cron:0 30 0 * * *}")
+    public synchronized void seal() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate last = LocalDate.now().minusDays(sealAfterDays);
+        for (LocalDate day = last.minusDays(lookbackDays); !day.isAfter(last); day = day.plusDays(1)) {
+            if (sealed.containsKey(day)) {
+                continue;
+            }
+            try {
+                seal(day);
+                sealedCounter.increment();
+                statsResultCache.invalidate(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+            } catch (IOException | DataAccessException e) {
+                log.error("Failed to seal hits of {}: {}", day, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Folds the late hits of sealed days into new segments, so they do not pile up in memory.
+     */
+    @Scheduled(fixedDelayString = "${stats.segments.reseal-interval-ms:60000}")
+    public synchronized void reseal() {
+        if (!enabled) {
+            return;
+        }
+        for (Map.Entry<LocalDate, SealedDay> entry : sealed.entrySet()) {
+            SealedDay current = entry.getValue();
+            int folded = current.getLate().size();
+            if (folded == 0) {
+                continue;
+            }
+            LocalDate day = entry.getKey();
+            try {
+                DayColumns columns = new DayColumns(dayStart(day));
+                current.getSegment().scan(Long.MIN_VALUE, Long.MAX_VALUE, null, true,
+                        (appId, uriId, second, ip) -> columns.add(second, appId, uriId, ip));
+                columns.addAll(current.getLate(), 0, folded);
+                Path path = directory.resolve(day + SUFFIX);
+                columns.write(path);
+                DaySegment segment = DaySegment.open(path);
+                synchronized (lateLock) {
+                    // hits that came in while the segment was written stay late
+                    DayColumns late = new DayColumns(dayStart(day));
+                    late.addAll(current.getLate(), folded, Integer.MAX_VALUE);
+                    sealed.put(day, new SealedDay(segment, late));
+                }
+                resealedCounter.increment();
+                log.info("Resealed {} with {} late hits", day, folded);
+            } catch (IOException e) {
+                log.error("Failed to reseal hits of {}: {}", day, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Keeps hits written for sealed days as late hits of that day, once their transaction has committed.
+     */
+    @Override
+    public void onHits(List<Hit> hits) {
+        if (!enabled || sealed.isEmpty() && sealing.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addLate(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addLate(hits);
+            }
+        });
+    }
+
+    private void addLate(List<Hit> hits) {
+        int added = 0;
+        synchronized (lateLock) {
+            for (Hit hit : hits) {
+                LocalDate date = hit.getTimestamp().toLocalDate();
+                SealedDay day = sealed.get(date);
+                DayColumns late = day != null ? day.getLate() : sealing.get(date);
+                if (late != null) {
+                    late.add(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC), hit.getAppId(),
+                            hit.getUriId(), hit.getIp());
+                    added++;
+                }
+            }
+        }
+        lateCounter.increment(added);
+    }
+
+    /**
+     * Collects late hits of the day from before the engine scan starts, so hits committed between the scan and
+     * the segment being published land in its late hits rather than nowhere. A hit whose commit races the very
+     * start of the scan may end up in both, which is the lesser error: raw reads then count it twice.
+     */
+    private void seal(LocalDate day) throws IOException {
+        DayColumns late = new DayColumns(dayStart(day));
+        synchronized (lateLock) {
+            sealing.put(day, late);
+        }
+        try {
+            DayColumns columns = new DayColumns(dayStart(day));
+            engine.scan(day.atStartOfDay(), day.plusDays(1).atStartOfDay(), (appId, uriId, ip, time) ->
+                    columns.add(time.toEpochSecond(ZoneOffset.UTC), appId, uriId, ip));
+            Path path = directory.resolve(day + SUFFIX);
+            columns.write(path);
+            DaySegment segment = DaySegment.open(path);
+            synchronized (lateLock) {
+                sealed.put(day, new SealedDay(segment, late));
+            }
+            log.info("Sealed {} hits of {} into {}, {} late hits during sealing", columns.size(), day, path,
+                    late.size());
+        } finally {
+            synchronized (lateLock) {
+                sealing.remove(day);
+            }
+        }
+    }
+
+    private static long dayStart(LocalDate day) {
+        return day.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.store;
+
+import ru.practicum.Hit;
+import ru.practicum.StatsRow;
+import ru.practicum.Visitor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Where raw hits live. Rollups, sketches, bitmaps and dictionaries always stay in Postgres; the store only holds
+ * the raw rows and answers the raw edges of a range that no rollup covers. A null or empty uriIds means all uris,
+ * ranges include their end unless endInclusive is false.
+ */
+public interface HitStore {
+
+    /**
+     * Qualifier of the engine that actually stores the hits, as opposed to the tiered store in front of it.
+     */
+    String ENGINE = "hitStoreEngine";
+
+    /**
+     * Saves encoded hits and returns the ones actually stored.
+     */
+    List<Hit> saveAll(List<Hit> hits);
+
+    List<StatsRow> findStats(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds);
+
+    List<StatsRow> findStatsByUniqIp(LocalDateTime start, LocalDateTime end, List<Integer> uriIds);
+
+    List<Visitor> findVisitors(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds);
+
+    /**
+     * True if the raw hits are rows of the hits table, so readers may query that table directly.
+     */
+    boolean isRelational();
+
+    void scanSince(LocalDateTime start, HitCallback callback);
+
+    /**
+     * Calls back for every hit with start <= time < end.
+     */
+    void scan(LocalDateTime start, LocalDateTime end, HitCallback callback);
+
+    @FunctionalInterface
+    interface HitCallback {
+
+        void accept(int appId, int uriId, String ip, LocalDateTime time);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.practicum.store;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.Hit;
+import ru.practicum.HitJdbcRepository;
+import ru.practicum.HitRepository;
+import ru.practicum.StatsRow;
+import ru.practicum.Visitor;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Component
+@Qualifier(HitStore.ENGINE)
+@ConditionalOnProperty(name = "stats.store.engine", havingValue = "postgres", matchIfMissing = true)
+public class JdbcHitStore implements HitStore {
+
+    private final HitJdbcRepository hitJdbcRepository;
+    private final HitRepository hitRepository;
+    private final JdbcTemplate scanTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public JdbcHitStore(HitJdbcRepository hitJdbcRepository,
+                        HitRepository hitRepository,
+                        DataSource dataSource,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        this.hitJdbcRepository = hitJdbcRepository;
+        this.hitRepository = hitRepository;
+        this.scanTemplate = new JdbcTemplate(dataSource);
+        this.scanTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public List<Hit> saveAll(List<Hit> hits) {
+        return hitJdbcRepository.saveAll(hits);
+    }
+
+    @Override
+    public List<StatsRow> findStats(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        if (uriIds == null || uriIds.isEmpty()) {
+            return endInclusive ? hitRepository.findAllStats(start, end) : hitRepository.findAllStatsBefore(start, end);
+        }
+        return endInclusive
+                ? hitRepository.findStatsByUris(start, end, uriIds)
+                : hitRepository.findStatsByUrisBefore(start, end, uriIds);
+    }
+
+    @Override
+    public List<StatsRow> findStatsByUniqIp(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        if (uriIds == null || uriIds.isEmpty()) {
+            return hitRepository.findAllStatsByUniqIp(start, end);
+        }
+        return hitRepository.findStatsByUrisByUniqIp(start, end, uriIds);
+    }
+
+    @Override
+    public List<Visitor> findVisitors(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        if (uriIds == null || uriIds.isEmpty()) {
+            return endInclusive ? hitRepository.findAllVisitors(start, end) : hitRepository.findAllVisitorsBefore(start, end);
+        }
+        return endInclusive
+                ? hitRepository.findVisitorsByUris(start, end, uriIds)
+                : hitRepository.findVisitorsByUrisBefore(start, end, uriIds);
+    }
+
+    @Override
+    public boolean isRelational() {
+        return true;
+    }
+
+    @Override
+    public void scanSince(LocalDateTime start, HitCallback callback) {
+        scan("SELECT app_id, uri_id, ip, time_stamp FROM hits WHERE time_stamp >= ?", callback,
+                Timestamp.valueOf(start));
+    }
+
+    @Override
+    public void scan(LocalDateTime start, LocalDateTime end, HitCallback callback) {
+        scan("SELECT app_id, uri_id, ip, time_stamp FROM hits WHERE time_stamp >= ? AND time_stamp < ?", callback,
+                Timestamp.valueOf(start), Timestamp.valueOf(end));
+    }
+
+    private void scan(String sql, HitCallback callback, Object... args) {
+        transactionTemplate.executeWithoutResult(status -> scanTemplate.query(sql,
+                rs -> {
+                    callback.accept(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getString("ip"),
+                            rs.getTimestamp("time_stamp").toLocalDateTime());
+                }, args));
+    }
+}
@@ -0,0 +1,219 @@
+package ru.practicum.store;
+
+import ru.practicum.Hit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * One fixed-size memory-mapped segment of the hit log. After an 8 byte header (magic, version) it holds records
+ *
+ * <pre>
+ * short length | long epochSecond | int appId | int uriId | byte ipLength | byte hitIdLength | ip | hitId
+ *     | int crc32
+ * </pre>
+ *
+ * where length counts the bytes after itself and the crc covers everything between length and crc. The length
+ * is written last, so a zero length marks the end of the log and a record torn by a crash fails its crc. A hit
+ * without an id has an empty one.
+ */
+class LogSegment implements Closeable {
+
+    static final int MAGIC = 0x48495453;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 8;
+    static final int MAX_IP_LENGTH = 45;
+
+    private static final int FIXED_SIZE = 8 + 4 + 4 + 1 + 1;
+    private static final int MAX_HIT_ID_LENGTH = 127;
+    private static final int CRC_SIZE = 4;
+
+    /**
+     * Largest record a segment can ever need room for, an empty segment must be at least this much larger
+     * than its header.
+     */
+    static final int MAX_RECORD_SIZE = 2 + FIXED_SIZE + MAX_IP_LENGTH + MAX_HIT_ID_LENGTH + CRC_SIZE;
+
+    private final long sequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile int position;
+    private volatile long minSecond = Long.MAX_VALUE;
+    private volatile long maxSecond = Long.MIN_VALUE;
+    private volatile boolean dirty;
+
+    private LogSegment(long sequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static LogSegment create(Path path, long sequence, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(sequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.position = HEADER_SIZE;
+        segment.buffer.force();
+        return segment;
+    }
+
+    /**
+     * Maps an existing segment and recovers it: records are replayed up to the first one that is missing or
+     * fails its crc, and everything after that point is zeroed so new appends start on a clean tail.
+     */
+    static LogSegment open(Path path, long sequence) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(sequence, channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        if (segment.buffer.getInt(0) != MAGIC || segment.buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a hit log segment: " + path);
+        }
+        segment.recover();
+        return segment;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    boolean overlaps(long fromSecond, long toSecond) {
+        return maxSecond >= fromSecond && minSecond < toSecond;
+    }
+
+    /**
+     * Appends one record, returns false if it does not fit. Only one thread may append at a time.
+     */
+    boolean append(long second, Hit hit) {
+        byte[] ipBytes = bytes(hit.getIp(), MAX_IP_LENGTH);
+        byte[] hitIdBytes = bytes(hit.getHitId(), MAX_HIT_ID_LENGTH);
+        int dataLength = FIXED_SIZE + ipBytes.length + hitIdBytes.length;
+        int length = dataLength + CRC_SIZE;
+        int start = position;
+        if (start + 2 + length > buffer.capacity()) {
+            return false;
+        }
+        int offset = start + 2;
+        buffer.putLong(offset, second);
+        buffer.putInt(offset + 8, hit.getAppId());
+        buffer.putInt(offset + 12, hit.getUriId());
+        buffer.put(offset + 16, (byte) ipBytes.length);
+        buffer.put(offset + 17, (byte) hitIdBytes.length);
+        for (int i = 0; i < ipBytes.length; i++) {
+            buffer.put(offset + FIXED_SIZE + i, ipBytes[i]);
+        }
+        for (int i = 0; i < hitIdBytes.length; i++) {
+            buffer.put(offset + FIXED_SIZE + ipBytes.length + i, hitIdBytes[i]);
+        }
+        buffer.putInt(offset + dataLength, crc(buffer, offset, dataLength));
+        buffer.putShort(start, (short) length);
+        minSecond = Math.min(minSecond, second);
+        maxSecond = Math.max(maxSecond, second);
+        dirty = true;
+        position = start + 2 + length;
+        return true;
+    }
+
+    /**
+     * Calls back for every record with fromSecond <= second < toSecond, reading straight from the mapping.
+     * The ip is only decoded when asked for, otherwise it is passed as null.
+     */
+    void scan(long fromSecond, long toSecond, boolean withIps, RecordCallback callback) {
+        ByteBuffer view = buffer.duplicate();
+        int end = position;
+        int offset = HEADER_SIZE;
+        while (offset < end) {
+            int length = view.getShort(offset);
+            long second = view.getLong(offset + 2);
+            if (second >= fromSecond && second < toSecond) {
+                String ip = null;
+                if (withIps) {
+                    int ipLength = view.get(offset + 2 + 16);
+                    byte[] ipBytes = new byte[ipLength];
+                    for (int i = 0; i < ipLength; i++) {
+                        ipBytes[i] = view.get(offset + 2 + FIXED_SIZE + i);
+                    }
+                    ip = new String(ipBytes, StandardCharsets.US_ASCII);
+                }
+                callback.accept(view.getInt(offset + 2 + 8), view.getInt(offset + 2 + 12), second, ip);
+            }
+            offset += 2 + length;
+        }
+    }
+
+    void force() {
+        if (dirty) {
+            dirty = false;
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void recover() {
+        int offset = HEADER_SIZE;
+        int capacity = buffer.capacity();
+        while (offset + 2 <= capacity) {
+            int length = buffer.getShort(offset);
+            if (length < FIXED_SIZE + CRC_SIZE || offset + 2 + length > capacity) {
+                break;
+            }
+            int ipLength = buffer.get(offset + 2 + 16);
+            int hitIdLength = buffer.get(offset + 2 + 17);
+            if (ipLength < 0 || hitIdLength < 0 || FIXED_SIZE + ipLength + hitIdLength + CRC_SIZE != length
+                    || buffer.getInt(offset + 2 + length - CRC_SIZE) != crc(buffer, offset + 2, length - CRC_SIZE)) {
+                break;
+            }
+            long second = buffer.getLong(offset + 2);
+            minSecond = Math.min(minSecond, second);
+            maxSecond = Math.max(maxSecond, second);
+            offset += 2 + length;
+        }
+        position = offset;
+        for (int i = offset; i < capacity; i++) {
+            if (buffer.get(i) != 0) {
+                for (int j = offset; j < capacity; j++) {
+                    buffer.put(j, (byte) 0);
+                }
+                buffer.force();
+                return;
+            }
+        }
+    }
+
+    private static byte[] bytes(String value, int maxLength) {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        return bytes.length > maxLength ? Arrays.copyOf(bytes, maxLength) : bytes;
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length).position(offset);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+
+    @FunctionalInterface
+    interface RecordCallback {
+
+        void accept(int appId, int uriId, long second, String ip);
+    }
+}
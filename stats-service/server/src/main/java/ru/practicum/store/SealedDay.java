@@ -0,0 +1,34 @@
+package ru.practicum.store;
+
+import java.util.Set;
+
+/**
+ * A sealed day as readers see it: its segment plus the hits written for the day after it was sealed, which stay
+ * in memory until the next reseal folds them into a new segment.
+ */
+class SealedDay {
+
+    private final DaySegment segment;
+    private final DayColumns late;
+
+    SealedDay(DaySegment segment, DayColumns late) {
+        this.segment = segment;
+        this.late = late;
+    }
+
+    DaySegment getSegment() {
+        return segment;
+    }
+
+    DayColumns getLate() {
+        return late;
+    }
+
+    /**
+     * Same contract as {@link DaySegment#scan}, late hits included.
+     */
+    void scan(long fromSecond, long toSecond, Set<Integer> uriIds, boolean withIps, LogSegment.RecordCallback callback) {
+        segment.scan(fromSecond, toSecond, uriIds, withIps, callback);
+        late.scan(fromSecond, toSecond, uriIds, withIps, callback);
+    }
+}
@@ -0,0 +1,229 @@
+package ru.practicum.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.Hit;
+import ru.practicum.StatsKey;
+import ru.practicum.StatsRow;
+import ru.practicum.Visitor;
+import ru.practicum.exception.StatsUnavailableException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Raw hits in an append-only log of memory-mapped segment files instead of the hits table. Appends go to the
+ * last segment under a single lock and a new segment is started when it is full; the active segment is forced
+ * to disk on a fixed interval and on shutdown, so a crash loses at most that interval. On startup every segment
+ * is recovered up to its last intact record. Queries scan the segments whose time range overlaps, reading
+ * records in place from the mappings.
+ * <p>
+ * The log cannot take part in the database transaction that upserts the rollups, so inside a transaction the
+ * hits are only appended once it has committed: a rolled back batch leaves no records behind. The other way
+ * round is not covered, a crash after the commit loses up to one fsync interval of records that the rollups
+ * already count, and recovery does not reconcile the two. Readers that need raw rows in SQL check
+ * {@link #isRelational()} and take another path.
+ */
+@Slf4j
+@Component
+@Qualifier(HitStore.ENGINE)
+@ConditionalOnProperty(name = "stats.store.engine", havingValue = "log")
+public class SegmentLogHitStore implements HitStore {
+
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<LogSegment> segments = new CopyOnWriteArrayList<>();
+    private final Object appendLock = new Object();
+    private final Counter droppedCounter;
+    private volatile LogSegment active;
+
+    public SegmentLogHitStore(MeterRegistry meterRegistry,
+                              @Value("${stats.store.log.directory:data/hits}") String directory,
+                              @Value("${stats.store.log.segment-size-mb:64}") int segmentSizeMb) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        if (segmentSize < LogSegment.HEADER_SIZE + LogSegment.MAX_RECORD_SIZE) {
+            throw new IllegalStateException("stats.store.log.segment-size-mb must be at least 1, was " + segmentSizeMb);
+        }
+        this.droppedCounter = meterRegistry.counter("stats.store.log.dropped");
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            segments.add(LogSegment.open(file, Long.parseLong(name.substring(0, name.length() - SUFFIX.length()))));
+        }
+        active = segments.isEmpty() ? roll(0) : segments.get(segments.size() - 1);
+        log.info("Hit log opened in {} with {} segments", directory.toAbsolutePath(), segments.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            for (LogSegment segment : segments) {
+                segment.close();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.store.log.fsync-interval-ms:1000}")
+    public void fsync() {
+        LogSegment segment = active;
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public List<Hit> saveAll(List<Hit> hits) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(hits);
+            return hits;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                append(hits);
+            }
+        });
+        return hits;
+    }
+
+    @Override
+    public boolean isRelational() {
+        return false;
+    }
+
+    @Override
+    public List<StatsRow> findStats(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        Set<Integer> uriFilter = toFilter(uriIds);
+        Map<StatsKey, long[]> counts = new HashMap<>();
+        scan(ceilSecond(start), endInclusive ? toSecond(end) + 1 : ceilSecond(end), false, (appId, uriId, second, ip) -> {
+            if (uriFilter == null || uriFilter.contains(uriId)) {
+                counts.computeIfAbsent(new StatsKey(appId, uriId), key -> new long[1])[0]++;
+            }
+        });
+        List<StatsRow> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> rows.add(new StatsRow(key.getAppId(), key.getUriId(), count[0])));
+        return rows;
+    }
+
+    @Override
+    public List<StatsRow> findStatsByUniqIp(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        Map<StatsKey, Set<String>> visitors = new HashMap<>();
+        for (Visitor visitor : findVisitors(start, end, true, uriIds)) {
+            visitors.computeIfAbsent(visitor.getKey(), key -> new HashSet<>()).add(visitor.getIp());
+        }
+        List<StatsRow> rows = new ArrayList<>(visitors.size());
+        visitors.forEach((key, ips) -> rows.add(new StatsRow(key.getAppId(), key.getUriId(), (long) ips.size())));
+        return rows;
+    }
+
+    @Override
+    public List<Visitor> findVisitors(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        Set<Integer> uriFilter = toFilter(uriIds);
+        Set<Visitor> visitors = new HashSet<>();
+        scan(ceilSecond(start), endInclusive ? toSecond(end) + 1 : ceilSecond(end), true, (appId, uriId, second, ip) -> {
+            if (uriFilter == null || uriFilter.contains(uriId)) {
+                visitors.add(new Visitor(appId, uriId, ip));
+            }
+        });
+        return new ArrayList<>(visitors);
+    }
+
+    @Override
+    public void scanSince(LocalDateTime start, HitCallback callback) {
+        scan(ceilSecond(start), Long.MAX_VALUE, true,
+                (appId, uriId, second, ip) -> callback.accept(appId, uriId, ip, LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC)));
+    }
+
+    @Override
+    public void scan(LocalDateTime start, LocalDateTime end, HitCallback callback) {
+        scan(ceilSecond(start), ceilSecond(end), true,
+                (appId, uriId, second, ip) -> callback.accept(appId, uriId, ip, LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC)));
+    }
+
+    private void append(List<Hit> hits) {
+        synchronized (appendLock) {
+            try {
+                for (int i = 0; i < hits.size(); i++) {
+                    Hit hit = hits.get(i);
+                    long second = toSecond(hit.getTimestamp());
+                    if (!active.append(second, hit)) {
+                        active.force();
+                        active = roll(active.getSequence() + 1);
+                        if (!active.append(second, hit)) {
+                            // cannot happen with the size checked above, but the rollups already count these
+                            droppedCounter.increment(hits.size() - i);
+                            throw new StatsUnavailableException(String.format(
+                                    "Hit of %s does not fit in an empty log segment, %s hits not appended",
+                                    hit.getUri(), hits.size() - i));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new StatsUnavailableException("Failed to append to hit log: " + e.getMessage());
+            }
+        }
+    }
+
+    private void scan(long fromSecond, long toSecond, boolean withIps, LogSegment.RecordCallback callback) {
+        for (LogSegment segment : segments) {
+            if (segment.overlaps(fromSecond, toSecond)) {
+                segment.scan(fromSecond, toSecond, withIps, callback);
+            }
+        }
+    }
+
+    private LogSegment roll(long sequence) throws IOException {
+        LogSegment segment = LogSegment.create(directory.resolve(String.format("%020d%s", sequence, SUFFIX)),
+                sequence, segmentSize);
+        segments.add(segment);
+        return segment;
+    }
+
+    private static Set<Integer> toFilter(List<Integer> uriIds) {
+        return uriIds == null || uriIds.isEmpty() ? null : new HashSet<>(uriIds);
+    }
+
+    private static long toSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long ceilSecond(LocalDateTime time) {
+        return time.getNano() == 0 ? toSecond(time) : toSecond(time) + 1;
+    }
+}
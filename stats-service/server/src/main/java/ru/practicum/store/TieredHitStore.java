@@ -0,0 +1,217 @@
+package ru.practicum.store;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.practicum.Hit;
+import ru.practicum.StatsKey;
+import ru.practicum.StatsRow;
+import ru.practicum.Visitor;
+import ru.practicum.aggregate.LongCountMap;
+import ru.practicum.aggregate.ParallelAggregator;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The hit store everything else talks to: writes and recent reads go to the engine, days that have been sealed
+ * into {@link DaySegment}s are read from their segment and late hits instead. A range is cut on day boundaries,
+ * consecutive unsealed days are answered by one engine query on the calling thread while sealed days are counted
+ * in parallel, and the pieces are merged.
+ */
+@Primary
+@Component
+public class TieredHitStore implements HitStore {
+
+    private static final long DAY_SECONDS = 86400;
+
+    private final HitStore engine;
+    private final DaySegmentSealer sealer;
+    private final ParallelAggregator aggregator;
+
+    public TieredHitStore(@Qualifier(HitStore.ENGINE) HitStore engine, DaySegmentSealer sealer,
+                          ParallelAggregator aggregator) {
+        this.engine = engine;
+        this.sealer = sealer;
+        this.aggregator = aggregator;
+    }
+
+    @Override
+    public List<Hit> saveAll(List<Hit> hits) {
+        return engine.saveAll(hits);
+    }
+
+    @Override
+    public List<StatsRow> findStats(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        if (!sealer.isEnabled()) {
+            return engine.findStats(start, end, endInclusive, uriIds);
+        }
+        Set<Integer> uriFilter = toFilter(uriIds);
+        List<Piece> pieces = split(start, end, endInclusive);
+        LongCountMap counts = aggregator.aggregate(pieces, piece -> piece.segment == null, piece -> {
+            if (piece.segment == null) {
+                return LongCountMap.of(engine.findStats(piece.start, piece.end, piece.endInclusive, uriIds));
+            }
+            LongCountMap segmentCounts = new LongCountMap();
+            piece.segment.scan(piece.fromSecond, piece.toSecond, uriFilter, false,
+                    (appId, uriId, second, ip) -> segmentCounts.increment(appId, uriId));
+            return segmentCounts;
+        });
+        List<StatsRow> rows = new ArrayList<>(counts.size());
+        counts.toStats().forEach((key, hits) -> rows.add(new StatsRow(key.getAppId(), key.getUriId(), hits)));
+        return rows;
+    }
+
+    @Override
+    public List<StatsRow> findStatsByUniqIp(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        if (!sealer.isEnabled() || !anySealed(start, end)) {
+            return engine.findStatsByUniqIp(start, end, uriIds);
+        }
+        Map<StatsKey, Set<String>> visitors = new HashMap<>();
+        for (Visitor visitor : findVisitors(start, end, true, uriIds)) {
+            visitors.computeIfAbsent(visitor.getKey(), key -> new HashSet<>()).add(visitor.getIp());
+        }
+        List<StatsRow> rows = new ArrayList<>(visitors.size());
+        visitors.forEach((key, ips) -> rows.add(new StatsRow(key.getAppId(), key.getUriId(), (long) ips.size())));
+        return rows;
+    }
+
+    @Override
+    public List<Visitor> findVisitors(LocalDateTime start, LocalDateTime end, boolean endInclusive, List<Integer> uriIds) {
+        if (!sealer.isEnabled()) {
+            return engine.findVisitors(start, end, endInclusive, uriIds);
+        }
+        Set<Integer> uriFilter = toFilter(uriIds);
+        Set<Visitor> visitors = new HashSet<>();
+        for (Piece piece : split(start, end, endInclusive)) {
+            if (piece.segment == null) {
+                visitors.addAll(engine.findVisitors(piece.start, piece.end, piece.endInclusive, uriIds));
+            } else {
+                piece.segment.scan(piece.fromSecond, piece.toSecond, uriFilter, true,
+                        (appId, uriId, second, ip) -> visitors.add(new Visitor(appId, uriId, ip)));
+            }
+        }
+        return new ArrayList<>(visitors);
+    }
+
+    @Override
+    public boolean isRelational() {
+        return engine.isRelational();
+    }
+
+    @Override
+    public void scanSince(LocalDateTime start, HitCallback callback) {
+        engine.scanSince(start, callback);
+    }
+
+    @Override
+    public void scan(LocalDateTime start, LocalDateTime end, HitCallback callback) {
+        if (!sealer.isEnabled()) {
+            engine.scan(start, end, callback);
+            return;
+        }
+        for (Piece piece : split(start, end, false)) {
+            if (piece.segment == null) {
+                engine.scan(piece.start, piece.end, callback);
+            } else {
+                piece.segment.scan(piece.fromSecond, piece.toSecond, null, true,
+                        (appId, uriId, second, ip) -> callback.accept(appId, uriId, ip, toTime(second)));
+            }
+        }
+    }
+
+    /**
+     * Cuts the range a day at a time. Sealed days become segment pieces over [fromSecond, toSecond); runs of
+     * unsealed days become one engine piece, keeping the caller's own bounds on the outermost pieces so their
+     * semantics are exact.
+     */
+    private List<Piece> split(LocalDateTime start, LocalDateTime end, boolean endInclusive) {
+        List<Piece> pieces = new ArrayList<>();
+        long from = ceilSecond(start);
+        long to = endInclusive ? toSecond(end) + 1 : ceilSecond(end);
+        if (from >= to) {
+            return pieces;
+        }
+        long pending = -1;
+        for (long day = Math.floorDiv(from, DAY_SECONDS); day * DAY_SECONDS < to; day++) {
+            long dayFrom = Math.max(from, day * DAY_SECONDS);
+            long dayTo = Math.min(to, (day + 1) * DAY_SECONDS);
+            SealedDay segment = sealer.find(LocalDate.ofEpochDay(day));
+            if (segment == null) {
+                if (pending < 0) {
+                    pending = dayFrom;
+                }
+                continue;
+            }
+            if (pending >= 0) {
+                pieces.add(new Piece(pending == from ? start : toTime(pending), toTime(dayFrom), false));
+                pending = -1;
+            }
+            pieces.add(new Piece(segment, dayFrom, dayTo));
+        }
+        if (pending >= 0) {
+            pieces.add(new Piece(pending == from ? start : toTime(pending), end, endInclusive));
+        }
+        return pieces;
+    }
+
+    private boolean anySealed(LocalDateTime start, LocalDateTime end) {
+        for (LocalDate day = start.toLocalDate(); !day.isAfter(end.toLocalDate()); day = day.plusDays(1)) {
+            if (sealer.find(day) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<Integer> toFilter(List<Integer> uriIds) {
+        return uriIds == null || uriIds.isEmpty() ? null : new HashSet<>(uriIds);
+    }
+
+    private static long toSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long ceilSecond(LocalDateTime time) {
+        return time.getNano() == 0 ? toSecond(time) : toSecond(time) + 1;
+    }
+
+    private static LocalDateTime toTime(long second) {
+        return LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+    }
+
+    private static class Piece {
+
+        private final SealedDay segment;
+        private final long fromSecond;
+        private final long toSecond;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final boolean endInclusive;
+
+        Piece(SealedDay segment, long fromSecond, long toSecond) {
+            this.segment = segment;
+            this.fromSecond = fromSecond;
+            this.toSecond = toSecond;
+            this.start = null;
+            this.end = null;
+            this.endInclusive = false;
+        }
+
+        Piece(LocalDateTime start, LocalDateTime end, boolean endInclusive) {
+            this.segment = null;
+            this.fromSecond = 0;
+            this.toSecond = 0;
+            this.start = start;
+            this.end = end;
+            this.endInclusive = endInclusive;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.stream;
+
+import ru.practicum.dto.StatsDto;
+
+import java.util.function.Consumer;
+
+@FunctionalInterface
+public interface StatsStream {
+
+    StatsStream EMPTY = consumer -> { };
+
+    void forEach(Consumer<StatsDto> consumer);
+}
@@ -0,0 +1,101 @@
+package ru.practicum.stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.rollup.RollupPiece;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+public class StatsStreamRepository {
+
+    private static final String DECODE_AND_ORDER = ") s " +
+            "JOIN app_dictionary a ON a.id = s.app_id " +
+            "JOIN uri_dictionary u ON u.id = s.uri_id " +
+            "ORDER BY s.hits DESC";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public StatsStreamRepository(DataSource dataSource,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(template);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, Consumer<StatsDto> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder("SELECT a.name AS app, u.name AS uri, s.hits FROM (")
+                .append("SELECT app_id, uri_id, SUM(hits) AS hits FROM (");
+        List<RollupPiece> pieces = RollupPiece.split(start, end);
+        for (int i = 0; i < pieces.size(); i++) {
+            RollupPiece piece = pieces.get(i);
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            String from = "from" + i;
+            String to = "to" + i;
+            params.addValue(from, Timestamp.valueOf(piece.getFrom()))
+                    .addValue(to, Timestamp.valueOf(piece.getTo()));
+            if (piece.isRaw()) {
+                sql.append("SELECT app_id, uri_id, COUNT(*) AS hits FROM hits WHERE time_stamp >= :")
+                        .append(from)
+                        .append(piece.isEndInclusive() ? " AND time_stamp <= :" : " AND time_stamp < :")
+                        .append(to);
+                appendUriFilter(sql, params, uriIds);
+                sql.append(" GROUP BY app_id, uri_id");
+            } else {
+                sql.append("SELECT app_id, uri_id, hits FROM ")
+                        .append(piece.getGranularity().getTable())
+                        .append(" WHERE bucket >= :")
+                        .append(from)
+                        .append(" AND bucket < :")
+                        .append(to);
+                appendUriFilter(sql, params, uriIds);
+            }
+        }
+        sql.append(") p GROUP BY app_id, uri_id")
+                .append(DECODE_AND_ORDER);
+        query(sql.toString(), params, consumer);
+    }
+
+    public void streamStatsByUniqIp(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, Consumer<StatsDto> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        StringBuilder sql = new StringBuilder("SELECT a.name AS app, u.name AS uri, s.hits FROM (")
+                .append("SELECT app_id, uri_id, COUNT(DISTINCT ip) AS hits FROM hits ")
+                .append("WHERE time_stamp BETWEEN :start AND :end");
+        appendUriFilter(sql, params, uriIds);
+        sql.append(" GROUP BY app_id, uri_id")
+                .append(DECODE_AND_ORDER);
+        query(sql.toString(), params, consumer);
+    }
+
+    private void query(String sql, MapSqlParameterSource params, Consumer<StatsDto> consumer) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(new StatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        }));
+    }
+
+    private static void appendUriFilter(StringBuilder sql, MapSqlParameterSource params, List<Integer> uriIds) {
+        if (uriIds != null && !uriIds.isEmpty()) {
+            sql.append(" AND uri_id IN (:uriIds)");
+            params.addValue("uriIds", uriIds);
+        }
+    }
+}
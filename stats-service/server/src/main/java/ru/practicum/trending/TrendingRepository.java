@@ -0,0 +1,59 @@
+package ru.practicum.trending;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class TrendingRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void saveSnapshot(LocalDateTime takenAt, Map<Integer, Double> scores) {
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM trending_snapshot");
+        List<Object[]> rows = new ArrayList<>(scores.size());
+        Timestamp timestamp = Timestamp.valueOf(takenAt);
+        scores.forEach((uriId, score) -> rows.add(new Object[]{uriId, score, timestamp}));
+        jdbcTemplate.getJdbcTemplate()
+                .batchUpdate("INSERT INTO trending_snapshot (uri_id, score, taken_at) VALUES (?, ?, ?)", rows);
+    }
+
+    public Map<Integer, Double> findSnapshot() {
+        Map<Integer, Double> scores = new HashMap<>();
+        jdbcTemplate.getJdbcTemplate().query("SELECT uri_id, score FROM trending_snapshot", rs -> {
+            scores.put(rs.getInt("uri_id"), rs.getDouble("score"));
+        });
+        return scores;
+    }
+
+    public LocalDateTime findSnapshotTime() {
+        List<Timestamp> times = jdbcTemplate.getJdbcTemplate()
+                .queryForList("SELECT MAX(taken_at) FROM trending_snapshot", Timestamp.class);
+        return times.isEmpty() || times.get(0) == null ? null : times.get(0).toLocalDateTime();
+    }
+
+    public void findMinuteHits(LocalDateTime from, HitsCallback callback) {
+        jdbcTemplate.query("SELECT uri_id, bucket, SUM(hits) AS hits FROM hits_minute " +
+                        "WHERE bucket >= :from GROUP BY uri_id, bucket",
+                new MapSqlParameterSource("from", Timestamp.valueOf(from)), rs -> {
+                    callback.accept(rs.getInt("uri_id"), rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits"));
+                });
+    }
+
+    @FunctionalInterface
+    public interface HitsCallback {
+
+        void accept(int uriId, LocalDateTime time, long hits);
+    }
+}
@@ -0,0 +1,170 @@
+package ru.practicum.trending;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.Hit;
+import ru.practicum.ingest.HitListener;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps an exponentially decayed hit score per uri. Scores are stored relative to a landmark time
+ * (forward decay), so a hit only adds exp(lambda * (t - landmark)) to its uri and nothing else has to be touched;
+ * the landmark is moved forward and all scores rescaled whenever a snapshot is taken.
+ */
+@Slf4j
+@Component
+public class TrendingTracker implements HitListener {
+
+    private static final int REPLAY_HALF_LIVES = 10;
+
+    private final TrendingRepository trendingRepository;
+    private final boolean enabled;
+    private final double lambda;
+    private final Duration halfLife;
+    private final double minScore;
+    private final ConcurrentMap<Integer, Double> scores = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile LocalDateTime landmark = LocalDateTime.now();
+
+    public TrendingTracker(TrendingRepository trendingRepository,
+                           @Value("${stats.trending.enabled:true}") boolean enabled,
+                           @Value("${stats.trending.half-life-minutes:60}") long halfLifeMinutes,
+                           @Value("${stats.trending.min-score:0.01}") double minScore) {
+        this.trendingRepository = trendingRepository;
+        this.enabled = enabled;
+        this.halfLife = Duration.ofMinutes(halfLifeMinutes);
+        this.lambda = Math.log(2) / halfLife.toMillis();
+        this.minScore = minScore;
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            LocalDateTime takenAt = trendingRepository.findSnapshotTime();
+            LocalDateTime replayFrom = LocalDateTime.now().minus(halfLife.multipliedBy(REPLAY_HALF_LIVES));
+            if (takenAt != null) {
+                landmark = takenAt;
+                scores.putAll(trendingRepository.findSnapshot());
+                replayFrom = takenAt.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            }
+            trendingRepository.findMinuteHits(replayFrom, (uriId, time, hits) -> add(uriId, time, hits));
+            log.info("Restored trending scores for {} uris", scores.size());
+        } catch (DataAccessException e) {
+            log.warn("Failed to restore trending scores: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    @Override
+    public void onHits(List<Hit> hits) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(hits);
+            }
+        });
+    }
+
+    public Map<Integer, Double> top(int limit, Set<Integer> uriIds) {
+        LocalDateTime now = LocalDateTime.now();
+        double decay;
+        PriorityQueue<Map.Entry<Integer, Double>> heap = new PriorityQueue<>(limit + 1, Map.Entry.comparingByValue());
+        lock.readLock().lock();
+        try {
+            decay = Math.exp(-lambda * millisBetween(landmark, now));
+            for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                if (uriIds != null && !uriIds.contains(entry.getKey())) {
+                    continue;
+                }
+                if (heap.size() < limit) {
+                    heap.add(Map.entry(entry.getKey(), entry.getValue()));
+                } else if (entry.getValue() > heap.peek().getValue()) {
+                    heap.poll();
+                    heap.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Map.Entry<Integer, Double>> top = new ArrayList<>(heap);
+        top.sort(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder()));
+        Map<Integer, Double> result = new LinkedHashMap<>();
+        top.forEach(entry -> result.put(entry.getKey(), entry.getValue() * decay));
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.trending.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, Double> snapshot = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            double decay = Math.exp(-lambda * millisBetween(landmark, now));
+            scores.replaceAll((uriId, score) -> score * decay);
+            scores.values().removeIf(score -> score < minScore);
+            landmark = now;
+            snapshot.putAll(scores);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            trendingRepository.saveSnapshot(now, snapshot);
+        } catch (DataAccessException e) {
+            log.warn("Failed to save trending snapshot: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private void record(List<Hit> hits) {
+        lock.readLock().lock();
+        try {
+            for (Hit hit : hits) {
+                add(hit.getUriId(), hit.getTimestamp(), 1);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(int uriId, LocalDateTime time, long hits) {
+        LocalDateTime now = LocalDateTime.now();
+        double weight = hits * Math.exp(lambda * millisBetween(landmark, time.isAfter(now) ? now : time));
+        scores.merge(uriId, weight, Double::sum);
+    }
+
+    private static long millisBetween(LocalDateTime from, LocalDateTime to) {
+        return ChronoUnit.MILLIS.between(from, to);
+    }
+}
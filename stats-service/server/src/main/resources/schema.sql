@@ -1,8 +1,175 @@
+CREATE TABLE IF NOT EXISTS app_dictionary (
+	id 		INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+	name 		VARCHAR(200) NOT NULL,
+	CONSTRAINT pk_app_dictionary PRIMARY KEY (id),
+	CONSTRAINT uq_app_dictionary_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS uri_dictionary (
+	id 		INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+	name 		VARCHAR(200) NOT NULL,
+	CONSTRAINT pk_uri_dictionary PRIMARY KEY (id),
+	CONSTRAINT uq_uri_dictionary_name UNIQUE (name)
+);
+
+DROP INDEX IF EXISTS idx_uri_dictionary_name_prefix;
+
+CREATE TABLE IF NOT EXISTS ip_dictionary (
+	id 		INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+	name 		VARCHAR(45) NOT NULL,
+	CONSTRAINT pk_ip_dictionary PRIMARY KEY (id),
+	CONSTRAINT uq_ip_dictionary_name UNIQUE (name)
+);
+
+-- hits used to be a plain table with an identity id: move it aside so the partitioned table can take its
+-- name, and drop the identity so its hits_id_seq does not clash with the shared sequence below
+DO $$
+DECLARE
+	idx RECORD;
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('hits') AND relkind = 'r') THEN
+		ALTER TABLE hits RENAME TO hits_legacy;
+		FOR idx IN SELECT indexname FROM pg_indexes
+				WHERE schemaname = current_schema() AND tablename = 'hits_legacy' LOOP
+			EXECUTE format('ALTER INDEX %I RENAME TO %I', idx.indexname, idx.indexname || '_legacy');
+		END LOOP;
+		ALTER TABLE hits_legacy ALTER COLUMN id DROP IDENTITY IF EXISTS;
+	END IF;
+END $$;
+
+CREATE SEQUENCE IF NOT EXISTS hits_id_seq;
+
 CREATE TABLE IF NOT EXISTS hits (
-	id 		BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-	app 		VARCHAR(200) NOT NULL,
-	uri 		VARCHAR(200) NOT NULL,
+	id 		BIGINT NOT NULL DEFAULT nextval('hits_id_seq'),
+	app_id 		INTEGER NOT NULL,
+	uri_id 		INTEGER NOT NULL,
+	resource_type	VARCHAR(50),
+	resource_id	BIGINT,
 	ip 		VARCHAR(25) NOT NULL,
 	time_stamp	TIMESTAMP WITHOUT TIME ZONE NOT NULL,
-	CONSTRAINT pk_hit PRIMARY KEY (id)
-);
\ No newline at end of file
+	hit_id		VARCHAR(64),
+	CONSTRAINT pk_hit PRIMARY KEY (id, time_stamp)
+) PARTITION BY RANGE (time_stamp);
+
+CREATE TABLE IF NOT EXISTS hits_default PARTITION OF hits DEFAULT;
+
+ALTER TABLE hits ADD COLUMN IF NOT EXISTS hit_id VARCHAR(64);
+
+-- app and uri used to be stored as strings in hits and the rollup tables
+DO $$
+DECLARE
+	t TEXT;
+BEGIN
+	FOREACH t IN ARRAY ARRAY['hits', 'hits_minute', 'hits_hour', 'hits_sketch_hour', 'hits_visitors_day'] LOOP
+		IF EXISTS (SELECT 1 FROM information_schema.columns
+				WHERE table_schema = current_schema() AND table_name = t AND column_name = 'app') THEN
+			EXECUTE format('INSERT INTO app_dictionary (name) SELECT DISTINCT app FROM %I ON CONFLICT DO NOTHING', t);
+			EXECUTE format('INSERT INTO uri_dictionary (name) SELECT DISTINCT uri FROM %I ON CONFLICT DO NOTHING', t);
+			EXECUTE format('ALTER TABLE %I ADD COLUMN app_id INTEGER, ADD COLUMN uri_id INTEGER', t);
+			EXECUTE format('UPDATE %I h SET app_id = a.id, uri_id = u.id FROM app_dictionary a, uri_dictionary u '
+					|| 'WHERE a.name = h.app AND u.name = h.uri', t);
+			IF t <> 'hits' THEN
+				EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', t, 'pk_' || t);
+			END IF;
+			EXECUTE format('ALTER TABLE %I DROP COLUMN app, DROP COLUMN uri, '
+					|| 'ALTER COLUMN app_id SET NOT NULL, ALTER COLUMN uri_id SET NOT NULL', t);
+			IF t <> 'hits' THEN
+				EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I PRIMARY KEY (uri_id, bucket, app_id)', t, 'pk_' || t);
+			END IF;
+		END IF;
+	END LOOP;
+END $$;
+
+-- resource columns were added later; fill them in for existing rows the same way ResourceRef parses a uri
+DO $$
+BEGIN
+	IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+			WHERE table_schema = current_schema() AND table_name = 'hits' AND column_name = 'resource_id') THEN
+		ALTER TABLE hits ADD COLUMN resource_type VARCHAR(50), ADD COLUMN resource_id BIGINT;
+		UPDATE hits h SET resource_type = r.m[1], resource_id = r.m[2]::BIGINT
+		FROM (SELECT id, regexp_match(name, '^/([[:alnum:]_-]{1,50})/([0-9]{1,18})/?(\?.*)?$') AS m
+			FROM uri_dictionary) r
+		WHERE r.id = h.uri_id AND r.m IS NOT NULL;
+	END IF;
+END $$;
+
+-- copy the plain table moved aside above into the default partition; the partition manager moves the rows
+-- into their own partitions on startup
+DO $$
+BEGIN
+	IF to_regclass('hits_legacy') IS NOT NULL THEN
+		INSERT INTO app_dictionary (name) SELECT DISTINCT app FROM hits_legacy ON CONFLICT DO NOTHING;
+		INSERT INTO uri_dictionary (name) SELECT DISTINCT uri FROM hits_legacy ON CONFLICT DO NOTHING;
+		INSERT INTO hits (id, app_id, uri_id, resource_type, resource_id, ip, time_stamp)
+		SELECT h.id, a.id, u.id, r.m[1], r.m[2]::BIGINT, h.ip, h.time_stamp
+		FROM hits_legacy h
+		JOIN app_dictionary a ON a.name = h.app
+		JOIN uri_dictionary u ON u.name = h.uri
+		CROSS JOIN LATERAL (SELECT regexp_match(h.uri, '^/([[:alnum:]_-]{1,50})/([0-9]{1,18})/?(\?.*)?$') AS m) r;
+		PERFORM setval('hits_id_seq', COALESCE((SELECT MAX(id) FROM hits), 0) + 1, false);
+		DROP TABLE hits_legacy;
+	END IF;
+END $$;
+
+CREATE INDEX IF NOT EXISTS idx_hits_time_stamp ON hits (time_stamp);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_hits_hit_id ON hits (hit_id, time_stamp)
+	WHERE hit_id IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_hits_resource ON hits (resource_type, resource_id, time_stamp)
+	WHERE resource_id IS NOT NULL;
+
+CREATE TABLE IF NOT EXISTS hits_minute (
+	app_id 		INTEGER NOT NULL,
+	uri_id 		INTEGER NOT NULL,
+	bucket		TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	hits		BIGINT NOT NULL,
+	CONSTRAINT pk_hits_minute PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_hits_minute_bucket ON hits_minute (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_hour (
+	app_id 		INTEGER NOT NULL,
+	uri_id 		INTEGER NOT NULL,
+	bucket		TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	hits		BIGINT NOT NULL,
+	CONSTRAINT pk_hits_hour PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_hits_hour_bucket ON hits_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_sketch_hour (
+	app_id 		INTEGER NOT NULL,
+	uri_id 		INTEGER NOT NULL,
+	bucket		TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	sketch		BYTEA NOT NULL,
+	CONSTRAINT pk_hits_sketch_hour PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_hits_sketch_hour_bucket ON hits_sketch_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_visitors_day (
+	app_id 		INTEGER NOT NULL,
+	uri_id 		INTEGER NOT NULL,
+	bucket		TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	visitors	BYTEA NOT NULL,
+	CONSTRAINT pk_hits_visitors_day PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_hits_visitors_day_bucket ON hits_visitors_day (bucket);
+
+CREATE TABLE IF NOT EXISTS trending_snapshot (
+	uri_id 		INTEGER NOT NULL,
+	score		DOUBLE PRECISION NOT NULL,
+	taken_at	TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	CONSTRAINT pk_trending_snapshot PRIMARY KEY (uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS compaction_state (
+	id 		SMALLINT NOT NULL,
+	compacted_until	TIMESTAMP WITHOUT TIME ZONE,
+	deleted		BIGINT NOT NULL DEFAULT 0,
+	updated_at	TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	CONSTRAINT pk_compaction_state PRIMARY KEY (id)
+);